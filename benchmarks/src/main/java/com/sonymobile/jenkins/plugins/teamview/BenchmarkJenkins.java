@@ -0,0 +1,68 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Sony Mobile Communications AB. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.teamview;
+
+import jenkins.model.Jenkins;
+import org.jvnet.hudson.test.HudsonTestCase;
+
+import java.io.File;
+
+/**
+ * Boots a Jenkins with a temporary JENKINS_HOME and this plugin installed, for benchmarks that need the real thing.
+ * Borrows the setup of {@link HudsonTestCase} without running as a test.
+ *
+ * @author Robert Sandell &lt;robert.sandell@sonymobile.com&gt;
+ */
+public class BenchmarkJenkins extends HudsonTestCase {
+
+    /**
+     * Starts Jenkins.
+     *
+     * @throws Exception if Jenkins can't be started.
+     */
+    public void start() throws Exception {
+        //The test case looks up its recipe annotations on the method with the name of the test.
+        setName("start");
+        setUp();
+    }
+
+    /**
+     * Stops Jenkins and removes the temporary JENKINS_HOME.
+     *
+     * @throws Exception if Jenkins can't be stopped.
+     */
+    public void stop() throws Exception {
+        tearDown();
+    }
+
+    /**
+     * The JENKINS_HOME of the running Jenkins.
+     *
+     * @return the root directory.
+     */
+    public File getHome() {
+        return Jenkins.getInstance().getRootDir();
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Sony Mobile Communications AB. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.teamview;
+
+import hudson.model.View;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The paths that depend on the number of views in a team: loading and saving the team,
+ * and looking up its properties and views.
+ *
+ * @author Robert Sandell &lt;robert.sandell@sonymobile.com&gt;
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TeamBenchmark {
+
+    private static final String DEFAULT_VIEW_NAME = "Default";
+
+    /**
+     * The number of views in the team, besides the default view.
+     */
+    @Param({"1", "50", "500" })
+    private int viewCount;
+
+    private BenchmarkJenkins jenkins;
+    private Team team;
+    private String viewName;
+    private boolean toggle;
+
+    /**
+     * Starts Jenkins and generates a team with {@link #viewCount} views.
+     *
+     * @throws Exception if so.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        jenkins = new BenchmarkJenkins();
+        jenkins.start();
+        TeamsGenerator.generate(1, viewCount);
+        team = new Team(TeamsGenerator.teamName(0), null);
+        PluginImpl.getInstance().getRegistry().put(team);
+        viewName = TeamsGenerator.viewName(viewCount / 2);
+    }
+
+    /**
+     * Stops Jenkins.
+     *
+     * @throws Exception if so.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        jenkins.stop();
+    }
+
+    /**
+     * Reading the team from disk.
+     *
+     * @return the team.
+     */
+    @Benchmark
+    public Team load() {
+        team.load();
+        return team;
+    }
+
+    /**
+     * Saving the team after a change, so that the file is written every time.
+     *
+     * @return the team.
+     * @throws Exception if so.
+     */
+    @Benchmark
+    public Team save() throws Exception {
+        toggle = !toggle;
+        String primary = DEFAULT_VIEW_NAME;
+        if (toggle) {
+            primary = TeamsGenerator.viewName(0);
+        }
+        team.getProperty(TeamViewsProperty.class).setPrimaryViewName(primary);
+        team.save();
+        return team;
+    }
+
+    /**
+     * Saving the team without any change, the file has the same content and isn't written.
+     *
+     * @return the team.
+     * @throws Exception if so.
+     */
+    @Benchmark
+    public Team saveUnchanged() throws Exception {
+        team.save();
+        return team;
+    }
+
+    /**
+     * Looking up a property by its class.
+     *
+     * @return the property.
+     */
+    @Benchmark
+    public TeamViewsProperty getProperty() {
+        return team.getProperty(TeamViewsProperty.class);
+    }
+
+    /**
+     * Looking up a property by its url, as for every request below the team.
+     *
+     * @return the property.
+     */
+    @Benchmark
+    public Object getDynamic() {
+        return team.getDynamic("views", null, null);
+    }
+
+    /**
+     * Looking up a view by its name.
+     *
+     * @return the view.
+     */
+    @Benchmark
+    public View getView() {
+        return team.getProperty(TeamViewsProperty.class).getView(viewName);
+    }
+
+    /**
+     * Resolving the primary view, as for every request to the views of the team.
+     *
+     * @return the view.
+     */
+    @Benchmark
+    public View getPrimaryView() {
+        return team.getProperty(TeamViewsProperty.class).getPrimaryView();
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Sony Mobile Communications AB. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.teamview;
+
+import hudson.model.RootAction;
+import jenkins.model.Jenkins;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The paths that depend on the number of teams: finding the team names on disk and looking up a team by its url.
+ * The teams are generated with {@link TeamsGenerator} and put in the registry as stubs, as with lazy loading.
+ *
+ * @author Robert Sandell &lt;robert.sandell@sonymobile.com&gt;
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TeamRegistryBenchmark {
+
+    private static final int VIEWS_PER_TEAM = 10;
+
+    /**
+     * The number of teams.
+     */
+    @Param({"1000", "10000", "50000" })
+    private int teamCount;
+
+    private BenchmarkJenkins jenkins;
+    private Teams teams;
+    private String teamName;
+
+    /**
+     * Starts Jenkins, generates {@link #teamCount} teams and adds them to the registry as stubs.
+     * The team that is looked up is loaded here, so that the measurements don't include loading it.
+     *
+     * @throws Exception if so.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        jenkins = new BenchmarkJenkins();
+        jenkins.start();
+        TeamsGenerator.generate(teamCount, VIEWS_PER_TEAM);
+        TeamRegistry registry = PluginImpl.getInstance().getRegistry();
+        for (String name : Team.getTeamNames()) {
+            registry.put(Team.createStub(name));
+        }
+        teams = Jenkins.getInstance().getExtensionList(RootAction.class).get(Teams.class);
+        teamName = TeamsGenerator.teamName(teamCount / 2);
+        registry.get(teamName).ensureLoaded();
+    }
+
+    /**
+     * Stops Jenkins.
+     *
+     * @throws Exception if so.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        jenkins.stop();
+    }
+
+    /**
+     * The names of the teams on disk, as read at startup.
+     *
+     * @return the names.
+     */
+    @Benchmark
+    public String[] getTeamNames() {
+        return Team.getTeamNames();
+    }
+
+    /**
+     * Looking up a loaded team, as for every request to a team page.
+     *
+     * @return the team.
+     */
+    @Benchmark
+    public Team getDynamic() {
+        return teams.getDynamic(teamName, null, null);
+    }
+
+    /**
+     * Looking up a team that doesn't exist.
+     *
+     * @return null.
+     */
+    @Benchmark
+    public Team getDynamicMissing() {
+        return teams.getDynamic("missing", null, null);
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Sony Mobile Communications AB. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.teamview;
+
+import com.thoughtworks.xstream.XStream;
+import hudson.model.ListView;
+import hudson.model.MyViewsProperty;
+import hudson.model.User;
+import hudson.model.View;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.XStream2;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.File;
+import java.io.StringWriter;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of reading the views of one user when importing them into a team. Compares the DOM and transformer
+ * pipeline that {@link UserUtil#unmarshalViews(String)} used to have, the streaming reader with a new
+ * {@link XMLInputFactory} per import, and the streaming reader the way {@link ViewImporter} runs it: on the reader
+ * threads of the plugin, whose per thread factories outlive the import, or on a new pool for every import, whose
+ * threads each have to create their factory again.
+ *
+ * @author Robert Sandell &lt;robert.sandell@sonymobile.com&gt;
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class UserViewsImportBenchmark {
+
+    /**
+     * The XStream the old pipeline parsed the serialized views with, configured as in {@link UserUtil}.
+     */
+    private static final XStream LEGACY_XSTREAM = new XStream2();
+
+    static {
+        LEGACY_XSTREAM.alias("user", User.class);
+        LEGACY_XSTREAM.alias("views", LinkedList.class);
+    }
+
+    /**
+     * The number of views the user has.
+     */
+    @Param({"10", "100", "500", "2000" })
+    private int viewCount;
+
+    private BenchmarkJenkins jenkins;
+    private File config;
+
+    /**
+     * Starts Jenkins and creates a user with {@link #viewCount} views.
+     *
+     * @throws Exception if so.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        jenkins = new BenchmarkJenkins();
+        jenkins.start();
+        User user = User.get("benchmark", true);
+        MyViewsProperty property = user.getProperty(MyViewsProperty.class);
+        for (int i = 0; i < viewCount; i++) {
+            property.addView(new ListView("view" + i));
+        }
+        user.save();
+        config = new File(new File(UserUtil.getRootDir(), "benchmark"), "config.xml");
+    }
+
+    /**
+     * Stops Jenkins.
+     *
+     * @throws Exception if so.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        jenkins.stop();
+    }
+
+    /**
+     * The way the views were read before: parse to a DOM, remove the owners, serialize the views element to a
+     * string and parse that with XStream, with new factories for every import.
+     *
+     * @return the views.
+     * @throws Exception if so.
+     */
+    @Benchmark
+    public List<View> domAndTransformer() throws Exception {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(config);
+        Element property = (Element)doc.getDocumentElement()
+                .getElementsByTagName("hudson.model.MyViewsProperty").item(0);
+        Element views = (Element)property.getElementsByTagName("views").item(0);
+        NodeList children = views.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node node = children.item(i);
+            if (node instanceof Element) {
+                NodeList owners = ((Element)node).getElementsByTagName("owner");
+                for (int j = 0; j < owners.getLength(); j++) {
+                    node.removeChild(owners.item(j));
+                }
+            }
+        }
+        StringWriter sw = new StringWriter();
+        Transformer t = TransformerFactory.newInstance().newTransformer();
+        t.transform(new DOMSource(views), new StreamResult(sw));
+        return (List<View>)LEGACY_XSTREAM.fromXML(sw.toString());
+    }
+
+    /**
+     * Streaming, with a new factory for every import.
+     *
+     * @return the views.
+     * @throws Exception if so.
+     */
+    @Benchmark
+    public List<View> streamingNewFactory() throws Exception {
+        return UserUtil.unmarshalViews(config, UserUtil.createInputFactory());
+    }
+
+    /**
+     * Streaming on the reader threads of the plugin, as {@link ViewImporter} does.
+     *
+     * @return the views.
+     * @throws Exception if so.
+     */
+    @Benchmark
+    public List<View> streamingReaderPool() throws Exception {
+        return PluginImpl.getInstance().getReaderExecutor().submit(new ReadViews()).get();
+    }
+
+    /**
+     * Streaming on a new pool for every import, as {@link ViewImporter} did before the plugin kept its reader
+     * threads.
+     *
+     * @return the views.
+     * @throws Exception if so.
+     */
+    @Benchmark
+    public List<View> streamingPoolPerImport() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(1, new DaemonThreadFactory());
+        try {
+            return executor.submit(new ReadViews()).get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Only the lookup and configuration of a new factory, the part of the overhead that the per thread factory
+     * removes.
+     *
+     * @return the factory.
+     */
+    @Benchmark
+    public XMLInputFactory newFactoryOnly() {
+        return UserUtil.createInputFactory();
+    }
+
+    /**
+     * Reads the views of the benchmark user the way an import does.
+     */
+    private static class ReadViews implements Callable<List<View>> {
+        @Override
+        public List<View> call() throws Exception {
+            return UserUtil.unmarshalViews("benchmark");
+        }
+    }
+}
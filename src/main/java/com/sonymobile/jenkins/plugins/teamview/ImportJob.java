@@ -0,0 +1,274 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Sony Mobile Communications AB. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.teamview;
+
+import hudson.model.ModelObject;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.kohsuke.stapler.HttpRedirect;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One background import of views into a team, see {@link TeamImport}.
+ *
+ * @author Robert Sandell &lt;robert.sandell@sonymobile.com&gt;
+ */
+public final class ImportJob implements ModelObject, Runnable {
+
+    private static final Logger logger = Logger.getLogger(ImportJob.class.getName());
+
+    /**
+     * The states of a job.
+     */
+    public enum State {
+        /** Waiting for an earlier import to finish. */
+        QUEUED,
+        /** Reading the users and adding the views. */
+        RUNNING,
+        /** Done, the views that could be read have been added. */
+        COMPLETED,
+        /** The views could not be added. */
+        FAILED,
+        /** Cancelled before the views were added. */
+        CANCELLED
+    }
+
+    private final Team team;
+    private final int id;
+    private final ViewImporter importer;
+    private final AtomicReference<State> state = new AtomicReference<State>(State.QUEUED);
+    private final long queuedAt = System.currentTimeMillis();
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private volatile String error;
+    private volatile Future<?> future;
+
+    /**
+     * Constructor.
+     *
+     * @param team     the team to import into.
+     * @param id       the id of the job within the team.
+     * @param importer the importer to run.
+     */
+    ImportJob(Team team, int id, ViewImporter importer) {
+        this.team = team;
+        this.id = id;
+        this.importer = importer;
+    }
+
+    /**
+     * Queues the job.
+     *
+     * @param executor the executor to run the job on.
+     */
+    void start(ExecutorService executor) {
+        future = executor.submit(this);
+    }
+
+    @Override
+    public void run() {
+        if (!state.compareAndSet(State.QUEUED, State.RUNNING)) {
+            return;
+        }
+        startedAt = System.currentTimeMillis();
+        try {
+            importer.importViews();
+            state.set(State.COMPLETED);
+        } catch (InterruptedIOException e) {
+            state.set(State.CANCELLED);
+        } catch (IOException e) {
+            fail(e);
+        } catch (RuntimeException e) {
+            fail(e);
+        } finally {
+            finishedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Records that the job failed.
+     *
+     * @param e the cause.
+     */
+    private void fail(Exception e) {
+        logger.log(Level.SEVERE, "Failed to import views into team " + team.getName(), e);
+        error = e.getMessage();
+        state.set(State.FAILED);
+    }
+
+    /**
+     * Cancels the job. A job that is adding the views to the team finishes anyway.
+     */
+    void cancel() {
+        if (state.compareAndSet(State.QUEUED, State.CANCELLED)) {
+            finishedAt = System.currentTimeMillis();
+        }
+        Future<?> f = future;
+        if (f != null) {
+            f.cancel(true);
+        }
+    }
+
+    /**
+     * The team the views are imported into.
+     *
+     * @return the team.
+     */
+    public Team getTeam() {
+        return team;
+    }
+
+    /**
+     * The id of the job within the team.
+     *
+     * @return the id.
+     */
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "#" + id;
+    }
+
+    /**
+     * The state of the job.
+     *
+     * @return the state.
+     */
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * If the job has stopped, for any reason.
+     *
+     * @return true if so.
+     */
+    public boolean isFinished() {
+        State current = state.get();
+        return current != State.QUEUED && current != State.RUNNING;
+    }
+
+    /**
+     * The users the views are imported from.
+     *
+     * @return the user names.
+     */
+    public List<String> getUserNames() {
+        return importer.getUserNames();
+    }
+
+    /**
+     * The progress of the job.
+     *
+     * @return the progress as JSON.
+     */
+    public JSONObject getProgress() {
+        JSONObject json = new JSONObject();
+        json.put("id", id);
+        json.put("state", state.get().name());
+        json.put("users", importer.getUserNames().size());
+        json.put("usersProcessed", importer.getUsersRead());
+        json.put("viewsProcessed", importer.getViewsRead());
+        json.put("viewsImported", importer.getImportedCount());
+        json.put("viewsSkipped", JSONArray.fromObject(importer.getSkippedViewNames()));
+        JSONArray failures = new JSONArray();
+        for (Map.Entry<String, IOException> failure : importer.getFailures().entrySet()) {
+            JSONObject entry = new JSONObject();
+            entry.put("user", failure.getKey());
+            entry.put("message", String.valueOf(failure.getValue().getMessage()));
+            failures.add(entry);
+        }
+        json.put("failures", failures);
+        if (error != null) {
+            json.put("error", error);
+        }
+        json.put("queuedAt", queuedAt);
+        json.put("startedAt", startedAt);
+        json.put("finishedAt", finishedAt);
+        json.put("duration", getDuration());
+        return json;
+    }
+
+    /**
+     * The number of milliseconds the job has been running, or ran.
+     *
+     * @return the duration, 0 if the job hasn't started.
+     */
+    public long getDuration() {
+        long start = startedAt;
+        if (start == 0) {
+            return 0;
+        }
+        long end = finishedAt;
+        if (end == 0) {
+            end = System.currentTimeMillis();
+        }
+        return end - start;
+    }
+
+    /**
+     * Serves the progress as JSON, for polling.
+     *
+     * @param request  the request.
+     * @param response the response.
+     * @throws IOException if the response can't be written.
+     */
+    public void doProgress(StaplerRequest request, StaplerResponse response) throws IOException {
+        response.setContentType("application/json;charset=UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.getWriter().print(getProgress().toString());
+    }
+
+    /**
+     * Cancels the job.
+     *
+     * @param request the request, must be a POST.
+     * @return a redirect back to the job.
+     */
+    public HttpResponse doCancel(StaplerRequest request) {
+        if (!"POST".equals(request.getMethod())) {
+            return HttpResponses.error(HttpServletResponse.SC_METHOD_NOT_ALLOWED, "POST required");
+        }
+        cancel();
+        return new HttpRedirect(".");
+    }
+}
@@ -25,11 +25,19 @@ package com.sonymobile.jenkins.plugins.teamview;
 
 import hudson.Functions;
 import hudson.Plugin;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
 import hudson.model.Hudson;
+import hudson.util.DaemonThreadFactory;
 import org.kohsuke.stapler.Stapler;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -40,24 +48,196 @@ import java.util.logging.Logger;
 public class PluginImpl extends Plugin {
     private static final Logger logger = Logger.getLogger(Team.class.getName());
 
-    private Map<String, Team> teams;
+    /**
+     * The maximum number of threads used to load the teams from disk during startup.
+     * Can be changed with the system property
+     * <code>com.sonymobile.jenkins.plugins.teamview.PluginImpl.loadThreads</code>.
+     */
+    static final int LOAD_THREADS = Integer.getInteger(PluginImpl.class.getName() + ".loadThreads",
+            Runtime.getRuntime().availableProcessors());
+
+    /**
+     * If true only stubs are registered during startup and each team is read from disk the first time it is used.
+     * Enabled with the system property <code>com.sonymobile.jenkins.plugins.teamview.PluginImpl.lazyLoad</code>.
+     */
+    static final boolean LAZY_LOAD = Boolean.getBoolean(PluginImpl.class.getName() + ".lazyLoad");
+
+    /**
+     * The number of milliseconds that saves of a team are collected before the team is written to disk.
+     * 0, the default, writes on every save. Can be changed with the system property
+     * <code>com.sonymobile.jenkins.plugins.teamview.PluginImpl.saveDelay</code>.
+     */
+    static final long SAVE_DELAY = Long.getLong(PluginImpl.class.getName() + ".saveDelay", 0);
+
+    /**
+     * If true the views of each team are stored in one file per view under <code>teams/&lt;name&gt;/views/</code>
+     * instead of in the team's config.xml. Existing teams are migrated when they are loaded, in either direction.
+     * Enabled with the system property <code>com.sonymobile.jenkins.plugins.teamview.PluginImpl.perViewStorage</code>.
+     */
+    static final boolean PER_VIEW_STORAGE = Boolean.getBoolean(PluginImpl.class.getName() + ".perViewStorage");
+
+    /**
+     * The number of teams shown on each page of the teams listing, at least one. Can be changed with the system
+     * property <code>com.sonymobile.jenkins.plugins.teamview.PluginImpl.pageSize</code>.
+     */
+    static final int PAGE_SIZE = Math.max(1, Integer.getInteger(PluginImpl.class.getName() + ".pageSize", 100));
+
+    /**
+     * The maximum number of threads used to read the users' views when importing views from many users at once.
+     * Can be changed with the system property
+     * <code>com.sonymobile.jenkins.plugins.teamview.PluginImpl.importThreads</code>.
+     */
+    static final int IMPORT_THREADS = Integer.getInteger(PluginImpl.class.getName() + ".importThreads",
+            Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Operations on teams that take at least this many milliseconds are logged with a breakdown of where the time
+     * went, and kept for {@link SlowOperationsLink}. A negative value turns the tracing off. Can be changed with the
+     * system property <code>com.sonymobile.jenkins.plugins.teamview.PluginImpl.slowOperationMillis</code>.
+     */
+    static final long SLOW_OPERATION_MILLIS = Long.getLong(PluginImpl.class.getName() + ".slowOperationMillis", 1000);
+
+    private final transient TeamRegistry registry = new TeamRegistry();
+
+    private transient TeamWriter teamWriter;
+
+    private transient ExecutorService importExecutor;
+
+    private transient ExecutorService readerExecutor;
+
+    private transient volatile Thread loader;
+
+    private transient TeamManifest manifest;
 
     @Override
     public void start() throws Exception {
         super.start();
         logger.info("Starting");
-        teams = new HashMap<String, Team>();
-        String[] teamNames = Team.getTeamNames();
-        if (teamNames == null) {
-            return;
-        }
-        for (String teamName : teamNames) {
-            Team team = new Team(teamName, null);
-            teams.put(teamName, team);
+        if (SAVE_DELAY > 0) {
+            teamWriter = new TeamWriter(SAVE_DELAY);
         }
+        importExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory());
+        readerExecutor = Executors.newFixedThreadPool(Math.max(1, IMPORT_THREADS), new DaemonThreadFactory());
         logger.info("Started");
     }
 
+    @Override
+    public void stop() throws Exception {
+        if (loader != null) {
+            loader.interrupt();
+        }
+        if (teamWriter != null) {
+            teamWriter.shutdown();
+        }
+        if (importExecutor != null) {
+            importExecutor.shutdownNow();
+        }
+        if (readerExecutor != null) {
+            readerExecutor.shutdownNow();
+        }
+        super.stop();
+    }
+
+    /**
+     * Starts loading the teams in the background once the jobs are loaded, so that a large number of teams doesn't
+     * hold up the startup of Jenkins. Until they are loaded, teams are loaded on demand, see {@link #getTeam(String)}.
+     */
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void startLoadingTeams() {
+        final PluginImpl plugin = getInstance();
+        Thread thread = new Thread("Loading teams") {
+            @Override
+            public void run() {
+                try {
+                    plugin.loadRegistry();
+                } catch (InterruptedException e) {
+                    logger.warning("Interrupted while loading the teams");
+                }
+            }
+        };
+        thread.setDaemon(true);
+        plugin.loader = thread;
+        thread.start();
+    }
+
+    /**
+     * Fills the registry with the teams on disk and marks it as ready. Teams that are already in the registry,
+     * because they were loaded on demand, are kept.
+     *
+     * @throws InterruptedException if interrupted while waiting for the teams to load.
+     */
+    void loadRegistry() throws InterruptedException {
+        long started = System.currentTimeMillis();
+        try {
+            String[] teamNames = Team.getTeamNames();
+            if (teamNames == null) {
+                return;
+            }
+            if (LAZY_LOAD) {
+                for (String teamName : teamNames) {
+                    registry.putIfAbsent(Team.createStub(teamName));
+                }
+            } else {
+                loadTeams(teamNames);
+            }
+        } finally {
+            registry.setReady();
+        }
+        logger.info("Loaded " + registry.size() + " teams in " + (System.currentTimeMillis() - started) + " ms");
+    }
+
+    /**
+     * Gets a team. While the registry isn't ready yet, a team that is on disk but hasn't been loaded
+     * is added to the registry as a stub, so that it can be used right away.
+     *
+     * @param name the name of the team.
+     * @return the team or null if there is no team with that name.
+     */
+    public Team getTeam(String name) {
+        Team team = registry.get(name);
+        if (team == null && !registry.isReady() && Team.existsOnDisk(name)) {
+            Team stub = Team.createStub(name);
+            team = registry.putIfAbsent(stub);
+            if (team == null) {
+                team = stub;
+            }
+        }
+        return team;
+    }
+
+    /**
+     * Loads the teams with the provided names from disk on a bounded pool of worker threads, see {@link #LOAD_THREADS}.
+     * Teams that fail to load are logged and left out, and teams already in the registry are kept.
+     *
+     * @param teamNames the names of the teams to load.
+     * @throws InterruptedException if interrupted while waiting for the teams to load.
+     */
+    private void loadTeams(String[] teamNames) throws InterruptedException {
+        int threads = Math.max(1, Math.min(LOAD_THREADS, teamNames.length));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory());
+        try {
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(teamNames.length);
+            for (final String teamName : teamNames) {
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        try {
+                            if (registry.get(teamName) == null) {
+                                registry.putIfAbsent(new Team(teamName, null));
+                            }
+                        } catch (RuntimeException e) {
+                            logger.log(Level.SEVERE, "Failed to load team " + teamName, e);
+                        }
+                        return null;
+                    }
+                });
+            }
+            executor.invokeAll(tasks);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     /**
      * Returns the singleton instance.
      *
@@ -69,15 +249,61 @@ public class PluginImpl extends Plugin {
 
 
     /**
-     * Standard getter.
+     * The registry of all teams.
+     *
+     * @return the registry.
+     */
+    public TeamRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Read only view of the teams by name, changes go through {@link #getRegistry()}.
      *
      * @return the teams.
      */
     public Map<String, Team> getTeams() {
-        if (teams == null) {
-            teams = new HashMap<String, Team>();
+        return registry.asMap();
+    }
+
+    /**
+     * The index of the team names on disk, read the first time it is needed and kept for the lifetime of the plugin.
+     *
+     * @return the manifest.
+     */
+    synchronized TeamManifest getManifest() {
+        if (manifest == null) {
+            manifest = TeamManifest.load();
         }
-        return teams;
+        return manifest;
+    }
+
+    /**
+     * The write-behind for team saves.
+     *
+     * @return the writer or null if teams are written on every save.
+     */
+    TeamWriter getTeamWriter() {
+        return teamWriter;
+    }
+
+    /**
+     * Runs the background imports of views, one at a time since each import reads its users in parallel.
+     *
+     * @return the executor.
+     */
+    ExecutorService getImportExecutor() {
+        return importExecutor;
+    }
+
+    /**
+     * Reads the users' views for the imports, with {@link #IMPORT_THREADS} threads. The threads live as long as the
+     * plugin so that what they cache per thread, like the XML input factory of {@link UserUtil}, is reused.
+     *
+     * @return the executor.
+     */
+    ExecutorService getReaderExecutor() {
+        return readerExecutor;
     }
 
     /**
@@ -86,10 +312,7 @@ public class PluginImpl extends Plugin {
      * @param team the Team to add.
      */
     public void addTeam(Team team) {
-        if (teams == null) {
-            teams = new HashMap<String, Team>();
-        }
-        teams.put(team.getName(), team);
+        registry.put(team);
     }
 
     /**
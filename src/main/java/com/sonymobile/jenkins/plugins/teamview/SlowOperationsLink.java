@@ -0,0 +1,79 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Sony Mobile Communications AB. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.teamview;
+
+import hudson.Extension;
+import hudson.model.ManagementLink;
+import jenkins.model.Jenkins;
+
+import java.util.List;
+
+/**
+ * Shows the recent slow operations on teams under Manage Jenkins, see {@link TeamTrace}.
+ *
+ * @author Robert Sandell &lt;robert.sandell@sonymobile.com&gt;
+ */
+@Extension
+public class SlowOperationsLink extends ManagementLink {
+
+    @Override
+    public String getIconFileName() {
+        return "monitor.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.SlowOperations_DisplayName();
+    }
+
+    @Override
+    public String getDescription() {
+        return Messages.SlowOperations_Description();
+    }
+
+    @Override
+    public String getUrlName() {
+        return "team-views-slow-operations";
+    }
+
+    /**
+     * The operations on teams that took longer than the threshold, only shown to administrators.
+     *
+     * @return the operations, newest first.
+     */
+    public List<TeamTrace.SlowOperation> getSlowOperations() {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        return TeamTrace.getSlowOperations();
+    }
+
+    /**
+     * The threshold for an operation to be considered slow.
+     *
+     * @return the milliseconds, negative if the tracing is turned off.
+     */
+    public long getThresholdMillis() {
+        return PluginImpl.SLOW_OPERATION_MILLIS;
+    }
+}
@@ -23,35 +23,44 @@
  */
 package com.sonymobile.jenkins.plugins.teamview;
 
+import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
+import com.thoughtworks.xstream.io.StreamException;
 import hudson.BulkChange;
 import hudson.CopyOnWrite;
+import hudson.Util;
 import hudson.XmlFile;
-import hudson.model.AllView;
 import hudson.model.AbstractModelObject;
+import hudson.model.AutoCompletionCandidates;
 import hudson.model.Descriptor;
 import hudson.model.DescriptorByNameOwner;
 import hudson.model.Saveable;
 import hudson.model.View;
 import hudson.model.listeners.SaveableListener;
+import hudson.util.AtomicFileWriter;
 import hudson.util.FormValidation;
 import jenkins.model.Jenkins;
 import jenkins.model.ModelObjectWithContextMenu;
 import net.sf.json.JSONObject;
+import org.kohsuke.stapler.HttpResponses;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
-import org.xml.sax.SAXException;
 
 import javax.servlet.ServletException;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.TransformerException;
 import java.io.File;
-import java.io.FilenameFilter;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -61,6 +70,10 @@ import static com.sonymobile.jenkins.plugins.teamview.PluginImpl.getIconPath;
 /**
  * A team in Jenkins that can contain views.
  *
+ * Readers never take any lock, the fields are volatile and the properties list is copy-on-write.
+ * Changes are serialized with each other through {@link #lock}, which is never held while the config file is
+ * written, the writes are instead ordered by {@link #ioLock}.
+ *
  * @author Tomas Westling &lt;tomas.westling@sonymobile.com&gt;
  */
 @XStreamAlias("team")
@@ -68,11 +81,53 @@ public class Team extends AbstractModelObject
                   implements Saveable, DescriptorByNameOwner, ModelObjectWithContextMenu, Comparable<Team> {
 
     private static final Logger logger = Logger.getLogger(Team.class.getName());
-    private static final String CONFIG_FILE_NAME = "config.xml";
+    /** The name of the file in the team directory that holds the configuration. */
+    static final String CONFIG_FILE_NAME = "config.xml";
     private static final String TEAM_DIRECTORY_NAME = "teams";
+    private static final String XML_HEADER = "<?xml version='1.0' encoding='UTF-8'?>\n";
+
+    /**
+     * The number of saves that were skipped because the config file already had the same content.
+     */
+    private static final AtomicLong SKIPPED_WRITES = new AtomicLong();
+
+    /**
+     * The maximum number of user ids suggested when importing views.
+     */
+    private static final int MAX_USER_SUGGESTIONS = 20;
+
+    private volatile String name = "";
+    private volatile String description = "";
 
-    private String name = "";
-    private String description = "";
+    /**
+     * Serializes the changes to this team.
+     */
+    private final transient ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Serializes the writes of the config file, and the rename of the team directory.
+     */
+    private final transient Object ioLock = new Object();
+
+    /**
+     * Incremented each time the team is serialized for writing, guarded by {@link #lock}.
+     */
+    private transient long serializedSequence;
+
+    /**
+     * The sequence number of the last serialized form that was written, guarded by {@link #ioLock}.
+     */
+    private transient long writtenSequence;
+
+    /**
+     * If the configuration has been read from disk, false for stubs created by {@link #createStub(String)}.
+     */
+    private transient volatile boolean loaded = true;
+
+    /**
+     * Digest of the content last written to or read from the config file, null if not yet known.
+     */
+    private transient volatile String lastDigest;
 
     /**
      * List of {@link TeamViewsProperty}s configured for this project.
@@ -80,6 +135,16 @@ public class Team extends AbstractModelObject
     @CopyOnWrite
     private volatile List<TeamProperty> properties = new ArrayList<TeamProperty>();
 
+    /**
+     * Lookup of {@link #properties} by class and by url name, replaced whenever the list is.
+     */
+    private transient volatile PropertyIndex propertyIndex;
+
+    /**
+     * The background imports of views into this team.
+     */
+    private final transient TeamImport teamImport = new TeamImport(this);
+
     static {
         Jenkins.XSTREAM.processAnnotations(Team.class);
         Jenkins.XSTREAM.processAnnotations(TeamViewsProperty.class);
@@ -98,40 +163,154 @@ public class Team extends AbstractModelObject
     }
 
     /**
-     * Loads the other data from disk if it's available.
+     * Stub constructor, the configuration is read from disk on first access.
+     *
+     * @param name the name of the team.
+     * @see #createStub(String)
      */
-    public synchronized void load() {
+    private Team(String name) {
+        this.name = name;
+        this.description = null;
+        this.loaded = false;
+    }
 
-        properties.clear();
+    /**
+     * Creates a lightweight team that only knows its name.
+     * The rest of the configuration is loaded from disk the first time it is needed.
+     *
+     * @param name the name of the team.
+     * @return the stub.
+     */
+    static Team createStub(String name) {
+        return new Team(name);
+    }
+
+    /**
+     * Tells if the configuration of this team has been loaded from disk.
+     *
+     * @return false if this is a stub that hasn't been accessed yet.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Loads the configuration from disk if this team is still a stub.
+     */
+    public void ensureLoaded() {
+        if (!loaded) {
+            loadStub();
+        }
+    }
 
-        XmlFile config = getConfigFile();
+    /**
+     * Loads the stub unless another thread got here first.
+     */
+    private void loadStub() {
+        boolean migrate;
+        lock.lock();
         try {
-            if (config.exists()) {
-                config.unmarshal(this);
+            if (loaded) {
+                return;
             }
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "Failed to load " + config, e);
+            migrate = readConfig();
+            //The description is known now.
+            PluginImpl.getInstance().getRegistry().updated(this);
+        } finally {
+            lock.unlock();
         }
+        if (migrate) {
+            migrateViews();
+        }
+    }
 
-        // remove nulls that have failed to load
-        for (Iterator<TeamProperty> itr = properties.iterator(); itr.hasNext();) {
-            if (itr.next() == null) {
-                itr.remove();
-            }
+    /**
+     * Loads the other data from disk if it's available.
+     */
+    public void load() {
+        boolean migrate;
+        lock.lock();
+        try {
+            migrate = readConfig();
+        } finally {
+            lock.unlock();
+        }
+        if (migrate) {
+            migrateViews();
         }
+    }
 
-        // allocate default instances if needed.
-        // doing so after load makes sure that newly added user properties do get reflected
-        for (TeamProperty.TeamPropertyDescriptor d : TeamProperty.all()) {
-            if (getProperty(d.clazz) == null) {
-                TeamProperty up = d.newInstance(this);
-                if (up != null) {
-                    properties.add(up);
+    /**
+     * Does the reading part of {@link #load()}, must be called while holding {@link #lock}.
+     *
+     * @return true if the team needs to be written to complete a migration between the storage layouts of the views.
+     */
+    private boolean readConfig() {
+        long started = TeamMetrics.TEAM_LOAD.start();
+        TeamTrace.Span span = TeamTrace.start("Team.load", name);
+        try {
+            properties = new ArrayList<TeamProperty>();
+            lastDigest = null;
+
+            XmlFile config = getConfigFile();
+            TeamTrace.Span unmarshal = TeamTrace.start("unmarshal", null);
+            try {
+                if (config.exists()) {
+                    config.unmarshal(this);
                 }
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Failed to load " + config, e);
+            } finally {
+                unmarshal.end();
             }
+
+            // remove nulls that have failed to load
+            List<TeamProperty> ps = new ArrayList<TeamProperty>(properties.size());
+            for (TeamProperty p : properties) {
+                if (p != null) {
+                    ps.add(p);
+                }
+            }
+
+            // allocate default instances if needed.
+            // doing so after load makes sure that newly added user properties do get reflected
+            for (TeamProperty.TeamPropertyDescriptor d : TeamProperty.all()) {
+                if (findProperty(ps, d.clazz) == null) {
+                    TeamProperty up = d.newInstance(this);
+                    if (up != null) {
+                        ps.add(up);
+                    }
+                }
+            }
+            for (TeamProperty p : ps) {
+                p.setTeam(this);
+            }
+            properties = ps;
+            loaded = true;
+
+            TeamViewsProperty viewsProperty = findProperty(TeamViewsProperty.class);
+            return viewsProperty != null && viewsProperty.loadViewFiles() && config.exists();
+        } finally {
+            span.end();
+            TeamMetrics.TEAM_LOAD.stop(started);
         }
-        for (TeamProperty p : properties) {
-            p.setTeam(this);
+    }
+
+    /**
+     * Writes the team in the current storage layout of the views after it was loaded from the other one, and removes
+     * the view files that are no longer needed. Like {@link #save()}, it writes without holding {@link #lock}.
+     */
+    private void migrateViews() {
+        try {
+            writeConfig();
+            if (!TeamViewStorage.isEnabled()) {
+                TeamViewsProperty viewsProperty = findProperty(TeamViewsProperty.class);
+                if (viewsProperty != null) {
+                    viewsProperty.deleteViewFiles();
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to migrate the views of " + getConfigFile(), e);
         }
     }
 
@@ -150,6 +329,7 @@ public class Team extends AbstractModelObject
      * @return the description.
      */
     public String getDescription() {
+        ensureLoaded();
         return description;
     }
 
@@ -182,6 +362,7 @@ public class Team extends AbstractModelObject
      * @return the properties.
      */
     public List<TeamProperty> getProperties() {
+        ensureLoaded();
         return properties;
     }
 
@@ -192,15 +373,16 @@ public class Team extends AbstractModelObject
      * @param token the team name.
      * @param req   the StaplerRequest
      * @param rsp   the StaplerResponse
-     * @return a Team.
+     * @return the property with the url name.
+     * @throws org.kohsuke.stapler.HttpResponseException 404 if no property has that url name.
      */
     public Object getDynamic(String token, StaplerRequest req, StaplerResponse rsp) {
-        for (TeamProperty property : getProperties()) {
-            if (property.getUrlName().equals(token) || property.getUrlName().equals('/' + token)) {
-                return property;
-            }
+        ensureLoaded();
+        TeamProperty property = getPropertyIndex().getByUrlName(token);
+        if (property == null) {
+            throw HttpResponses.notFound();
         }
-        return null;
+        return property;
     }
 
     /**
@@ -209,15 +391,24 @@ public class Team extends AbstractModelObject
      * @param p the property to add.
      * @throws IOException if the Team cannot be saved.
      */
-    public synchronized void addProperty(TeamViewsProperty p) throws IOException {
-        TeamProperty old = getProperty(p.getClass());
-        List<TeamProperty> ps = new ArrayList<TeamProperty>(properties);
-        if (old != null) {
-            ps.remove(old);
+    public void addProperty(TeamViewsProperty p) throws IOException {
+        ensureLoaded();
+        lock.lock();
+        try {
+            TeamProperty old = getProperty(p.getClass());
+            List<TeamProperty> ps = new ArrayList<TeamProperty>(properties);
+            if (old != null) {
+                ps.remove(old);
+            }
+            ps.add(p);
+            p.setTeam(this);
+            if (TeamViewStorage.isEnabled()) {
+                p.markAllViewsDirty();
+            }
+            properties = ps;
+        } finally {
+            lock.unlock();
         }
-        ps.add(p);
-        p.setTeam(this);
-        properties = ps;
         save();
     }
 
@@ -229,7 +420,46 @@ public class Team extends AbstractModelObject
      * @return the property.
      */
     public <T extends TeamProperty> T getProperty(Class<T> clazz) {
-        for (TeamProperty p : properties) {
+        ensureLoaded();
+        return findProperty(clazz);
+    }
+
+    /**
+     * Gets the specific property, or null, without loading a stub.
+     *
+     * @param clazz the Class to get the property for.
+     * @param <T> the TeamProperty subtype to find.
+     * @return the property.
+     */
+    private <T extends TeamProperty> T findProperty(Class<T> clazz) {
+        return getPropertyIndex().get(clazz);
+    }
+
+    /**
+     * Gets the index of the current properties, creating a new one if the properties list has been replaced.
+     *
+     * @return the index.
+     */
+    private PropertyIndex getPropertyIndex() {
+        List<TeamProperty> current = properties;
+        PropertyIndex index = propertyIndex;
+        if (index == null || index.properties != current) {
+            index = new PropertyIndex(current);
+            propertyIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Finds the specific property in a list of properties.
+     *
+     * @param list  the properties to search.
+     * @param clazz the Class to get the property for.
+     * @param <T> the TeamProperty subtype to find.
+     * @return the property or null.
+     */
+    private static <T extends TeamProperty> T findProperty(List<TeamProperty> list, Class<T> clazz) {
+        for (TeamProperty p : list) {
             if (clazz.isInstance(p)) {
                 return clazz.cast(p);
             }
@@ -238,7 +468,8 @@ public class Team extends AbstractModelObject
     }
 
     /**
-     * Gets all the saved team names from disk.
+     * Gets all the saved team names from disk. The names are taken from the {@link TeamManifest},
+     * the team directories are only scanned if the manifest is missing.
      *
      * @return an Array of team names or null if no teams exist.
      */
@@ -247,29 +478,21 @@ public class Team extends AbstractModelObject
         if (!teamsDir.exists() || !teamsDir.isDirectory()) {
             return null;
         }
-        String[] list = teamsDir.list(new FilenameFilter() {
-            @Override
-            public boolean accept(File file, String s) {
-                File file2 = new File(file, s);
-                if (!file2.exists() || !file.isDirectory()) {
-                    return false;
-                }
-                String[] list1 = file2.list(new FilenameFilter() {
-                    @Override
-                    public boolean accept(File file, String s) {
-                        if (CONFIG_FILE_NAME.equals(s)) {
-                            return true;
-                        }
-                        return false;
-                    }
-                });
-                if (list1.length != 1) {
-                    return false;
-                }
-                return true;
-            }
-        });
-        return list;
+        return TeamManifest.get().getTeamNames();
+    }
+
+    /**
+     * Checks if there is a team with a specific name on disk.
+     *
+     * @param name the name of the team.
+     * @return true if the team has a config file.
+     */
+    static boolean existsOnDisk(String name) {
+        if (name == null || name.length() == 0 || ".".equals(name) || "..".equals(name)
+                || name.indexOf('/') >= 0 || name.indexOf('\\') >= 0) {
+            return false;
+        }
+        return getConfigFileFor(name).isFile();
     }
 
     /**
@@ -292,11 +515,11 @@ public class Team extends AbstractModelObject
     }
 
     /**
-     * Gets the directory where Hudson stores user information.
+     * Gets the directory where the teams are stored.
      *
      * @return the directory.
      */
-    private static File getRootDir() {
+    static File getRootDir() {
         return new File(Jenkins.getInstance().getRootDir(), TEAM_DIRECTORY_NAME);
     }
 
@@ -307,26 +530,213 @@ public class Team extends AbstractModelObject
      * @return true if the rename was successful, false if not.
      */
     private boolean renameTeamOnDisk(String to) {
-        File teamDirectory = new File(getRootDir(), name);
-        File newTeamDirectory = new File(getRootDir(), to);
-        if (teamDirectory.exists() && teamDirectory.isDirectory()) {
-            return teamDirectory.renameTo(newTeamDirectory);
-        } else {
-            return newTeamDirectory.mkdirs();
+        synchronized (ioLock) {
+            File teamDirectory = new File(getRootDir(), name);
+            File newTeamDirectory = new File(getRootDir(), to);
+            if (teamDirectory.exists() && teamDirectory.isDirectory()) {
+                return teamDirectory.renameTo(newTeamDirectory);
+            } else {
+                return newTeamDirectory.mkdirs();
+            }
         }
     }
 
     /**
-     * Save the settings to a file.
+     * Renames the team directory and changes the name of the team.
+     * Only to be called from {@link TeamRegistry#rename(Team, String)}, which has reserved the new name.
+     *
+     * @param to the new team name.
+     * @throws IOException if the team directory couldn't be renamed.
+     */
+    void moveTo(String to) throws IOException {
+        lock.lock();
+        try {
+            if (!renameTeamOnDisk(to)) {
+                throw new IOException("The team with name " + name + " could not be renamed to " + to);
+            }
+            TeamManifest.get().rename(name, to);
+            name = to;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Save the settings to a file. If write-behind is enabled the team is only marked as dirty
+     * and written later, see {@link PluginImpl#SAVE_DELAY}.
      *
      * @throws IOException if the file cannot be saved.
      */
-    public synchronized void save() throws IOException {
+    public void save() throws IOException {
         if (BulkChange.contains(this)) {
             return;
         }
-        getConfigFile().write(this);
-        SaveableListener.fireOnChange(this, getConfigFile());
+        ensureLoaded();
+        TeamWriter writer = PluginImpl.getInstance().getTeamWriter();
+        if (writer != null && writer.schedule(this)) {
+            return;
+        }
+        writeConfig();
+    }
+
+    /**
+     * Writes the settings to the config file right away and notifies the {@link SaveableListener}s.
+     * Nothing is written and nobody is notified if the config file already has the same content.
+     * The team is serialized while holding {@link #lock}, but the file is written after the lock is released.
+     *
+     * @throws IOException if the file cannot be saved.
+     */
+    void writeConfig() throws IOException {
+        long started = TeamMetrics.TEAM_SAVE.start();
+        TeamTrace.Span span = TeamTrace.start("Team.save", name);
+        try {
+            writeConfigNow();
+        } finally {
+            span.end();
+            TeamMetrics.TEAM_SAVE.stop(started);
+        }
+    }
+
+    /**
+     * Does the work of {@link #writeConfig()}.
+     *
+     * @throws IOException if the file cannot be saved.
+     */
+    private void writeConfigNow() throws IOException {
+        XStream xstream = Jenkins.XSTREAM;
+        if (TeamViewStorage.isEnabled()) {
+            xstream = TeamViewStorage.getConfigXStream();
+        }
+        String teamName;
+        String xml;
+        long sequence;
+        lock.lock();
+        try {
+            teamName = name;
+            TeamViewsProperty orderedViews = findProperty(TeamViewsProperty.class);
+            if (orderedViews != null) {
+                orderedViews.updateViewOrder();
+            }
+            TeamTrace.Span serialize = TeamTrace.start("serialize", null);
+            try {
+                xml = toXml(xstream);
+            } finally {
+                serialize.end();
+            }
+            sequence = ++serializedSequence;
+        } finally {
+            lock.unlock();
+        }
+
+        XmlFile config = new XmlFile(xstream, getConfigFileFor(teamName));
+        boolean changed;
+        boolean viewsWritten = false;
+        synchronized (ioLock) {
+            if (sequence < writtenSequence || !teamName.equals(name)) {
+                //A newer version of the team has already been written, or will be under its new name.
+                return;
+            }
+            writtenSequence = sequence;
+            TeamViewsProperty viewsProperty = findProperty(TeamViewsProperty.class);
+            if (TeamViewStorage.isEnabled() && viewsProperty != null) {
+                TeamTrace.Span viewFiles = TeamTrace.start("write view files", null);
+                try {
+                    viewsWritten = viewsProperty.writeViewFiles();
+                } finally {
+                    viewFiles.end();
+                }
+            }
+            String digest = Util.getDigestOf(xml);
+            if (lastDigest == null && config.exists()) {
+                lastDigest = digestOf(config.getFile());
+            }
+            changed = !digest.equals(lastDigest);
+            if (changed) {
+                TeamTrace.Span write = TeamTrace.start("write", null);
+                try {
+                    writeXml(config.getFile(), xml);
+                } finally {
+                    write.end();
+                }
+                TeamMetrics.TEAM_SAVE_BYTES.add(xml.getBytes("UTF-8").length);
+                lastDigest = digest;
+                TeamManifest.get().add(teamName);
+            } else {
+                SKIPPED_WRITES.incrementAndGet();
+            }
+        }
+        if (changed || viewsWritten) {
+            TeamTrace.Span listeners = TeamTrace.start("SaveableListener.fireOnChange", null);
+            try {
+                SaveableListener.fireOnChange(this, config);
+            } finally {
+                listeners.end();
+            }
+        }
+    }
+
+    /**
+     * Serializes this team the same way as {@link XmlFile#write(Object)} does.
+     *
+     * @param xstream the XStream to use.
+     * @return the content of the config file.
+     * @throws IOException if the team can't be serialized.
+     */
+    private String toXml(XStream xstream) throws IOException {
+        StringWriter writer = new StringWriter();
+        writer.write(XML_HEADER);
+        try {
+            xstream.toXML(this, writer);
+        } catch (StreamException e) {
+            throw new IOException("Failed to serialize team " + name, e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Atomically replaces the content of a file.
+     *
+     * @param file the file.
+     * @param xml  the new content.
+     * @throws IOException if the file can't be written.
+     */
+    private static void writeXml(File file, String xml) throws IOException {
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Failed to create " + dir);
+        }
+        AtomicFileWriter writer = new AtomicFileWriter(file);
+        try {
+            writer.write(xml);
+            writer.commit();
+        } finally {
+            writer.abort();
+        }
+    }
+
+    /**
+     * Calculates the digest of the content of a file.
+     *
+     * @param file the file.
+     * @return the digest.
+     * @throws IOException if the file can't be read.
+     */
+    private static String digestOf(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            return Util.getDigestOf(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * The number of saves that didn't write anything since the team hadn't changed.
+     *
+     * @return the number of skipped writes since Jenkins started.
+     */
+    public static long getSkippedWriteCount() {
+        return SKIPPED_WRITES.get();
     }
 
     /**
@@ -336,31 +746,52 @@ public class Team extends AbstractModelObject
      * @param response the StaplerResponse.
      * @throws Exception if anything goes wrong with the form.
      */
-    public synchronized void doConfigSubmit(StaplerRequest request, StaplerResponse response) throws Exception {
+    public void doConfigSubmit(StaplerRequest request, StaplerResponse response) throws Exception {
+        TeamTrace.Span span = TeamTrace.start("Team.doConfigSubmit", name);
+        try {
+            configSubmit(request, response);
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Does the work of {@link #doConfigSubmit(StaplerRequest, StaplerResponse)}.
+     *
+     * @param request  the StaplerRequest.
+     * @param response the StaplerResponse.
+     * @throws Exception if anything goes wrong with the form.
+     */
+    private void configSubmit(StaplerRequest request, StaplerResponse response) throws Exception {
+        ensureLoaded();
         JSONObject form = request.getSubmittedForm();
         String formName = form.getString("name");
         String formDescription = form.getString("description");
         String formPrimaryViewName = form.getString("primaryViewName");
-        if (!formName.equals(name)) {
-            if (PluginImpl.getInstance().getTeams().get(formName) == null) {
-                boolean renamed = renameTeamOnDisk(formName);
-                if (renamed) {
-                    PluginImpl.getInstance().getTeams().remove(name);
-                    name = formName;
-                    PluginImpl.getInstance().addTeam(this);
-                } else {
-                    logger.warning("The team with name " + name + " could not be renamed");
+        lock.lock();
+        try {
+            if (!formName.equals(name)) {
+                TeamTrace.Span rename = TeamTrace.start("rename", formName);
+                try {
+                    if (!PluginImpl.getInstance().getRegistry().rename(this, formName)) {
+                        throw new Descriptor.FormException("A team with that name already exists!", "name");
+                    }
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "The team with name " + name + " could not be renamed", e);
+                } finally {
+                    rename.end();
                 }
-            } else {
-                throw new Descriptor.FormException("A team with that name already exists!", "name");
             }
-        }
-        this.description = formDescription;
-        for (TeamProperty prop : properties) {
-            if (prop instanceof TeamViewsProperty) {
-                ((TeamViewsProperty)prop).setPrimaryViewName(formPrimaryViewName);
+            this.description = formDescription;
+            for (TeamProperty prop : properties) {
+                if (prop instanceof TeamViewsProperty) {
+                    ((TeamViewsProperty)prop).setPrimaryViewName(formPrimaryViewName);
+                }
             }
+        } finally {
+            lock.unlock();
         }
+        PluginImpl.getInstance().getRegistry().updated(this);
         save();
         response.sendRedirect2("/" + getUrl());
     }
@@ -380,68 +811,78 @@ public class Team extends AbstractModelObject
     }
 
     /**
-     * Imports the personal views from the provided userName. Skips the AllView.
+     * The page for importing views from users in the background, at /teams/name/import.
      *
-     * @param idOrFullName the username
-     * @throws IOException                  if so.
-     * @throws SAXException                 if any problems occur during the parsing of the user's config.xml. See
-     *                                      {@link UserUtil#unmarshalViews(String)}
-     * @throws ParserConfigurationException if a DocumentBuilder cannot be created while opening the user's config.xml.
-     *                                      See {@link UserUtil#unmarshalViews(String)}
-     * @throws TransformerException         if any problems occur during the transformation of the user's views in
-     *                                      config.xml. See {@link UserUtil#unmarshalViews(String)}
+     * @return the import page.
      */
-    private void importViews(String idOrFullName) throws IOException, SAXException, ParserConfigurationException,
-            TransformerException {
-        UserUtil.checkViewsReadPermission(idOrFullName);
-        List<View> views = UserUtil.unmarshalViews(idOrFullName);
-        TeamViewsProperty teamProperty = getProperty(TeamViewsProperty.class);
-
-        if (views != null && teamProperty != null) {
-            for (View view : views) {
-                if (!(view instanceof AllView)) {
-                    teamProperty.addView(view);
-                }
-            }
-        }
+    public TeamImport getImport() {
+        return teamImport;
     }
 
     /**
      * FormValidation for the userName in /teams/name/import.
      *
-     * @param userName the username
+     * @param userName the user names, separated by commas or line breaks.
      * @return the validation result.
      */
     public FormValidation doCheckUserName(@QueryParameter String userName) {
-        if (UserUtil.userExists(userName)) {
-            return FormValidation.ok();
-        } else {
+        List<String> userNames = ViewImporter.parseUserNames(userName);
+        if (userNames.isEmpty()) {
             return FormValidation.error("User %s does not exist.", userName);
         }
+        for (String user : userNames) {
+            if (!UserUtil.userExists(user)) {
+                return FormValidation.error("User %s does not exist.", user);
+            }
+        }
+        return FormValidation.ok();
     }
 
     /**
-     * The form submit for /teams/name/import imports the views from the userName.
+     * Suggests user ids for the userName in /teams/name/import, completing the last user in the list.
      *
-     * @param userName the userName to fetch the private views from
+     * @param value the text typed so far.
+     * @return the ids of the users starting with the last name in the text.
+     */
+    public AutoCompletionCandidates doAutoCompleteUserName(@QueryParameter String value) {
+        AutoCompletionCandidates candidates = new AutoCompletionCandidates();
+        List<String> names = ViewImporter.parseUserNames(value);
+        String prefix = "";
+        if (!names.isEmpty()) {
+            prefix = UserUtil.toStorageId(names.get(names.size() - 1));
+        }
+        for (String id : UserIndex.get().startingWith(prefix, MAX_USER_SUGGESTIONS)) {
+            candidates.add(id);
+        }
+        return candidates;
+    }
+
+    /**
+     * The form submit for /teams/name/import imports the views from the users, see {@link ViewImporter}.
+     * Skips the AllView.
+     *
+     * @param userName the users to fetch the private views from, separated by commas or line breaks.
      * @param request  the request
      * @param response the response
-     * @throws Descriptor.FormException     if the user does not exist
-     * @throws TransformerException         See {@link #importViews(String)}
-     * @throws IOException                  if so.
-     * @throws SAXException                 See {@link #importViews(String)}
-     * @throws ParserConfigurationException See {@link #importViews(String)}
+     * @throws Descriptor.FormException if a user does not exist or if the views of a user couldn't be read.
+     * @throws IOException              if the team can't be saved.
      */
     public void doImportViewsSubmit(@QueryParameter String userName, StaplerRequest request, StaplerResponse response)
-            throws Descriptor.FormException, TransformerException, IOException, SAXException,
-            ParserConfigurationException {
-        if (UserUtil.userExists(userName)) {
-            importViews(userName);
-            save();
-            response.sendRedirect2("/" + getUrl() + "views");
-        } else {
-            throw new Descriptor.FormException("User " + userName + " does not exist.", "userName");
+            throws Descriptor.FormException, IOException {
+        TeamTrace.Span span = TeamTrace.start("Team.doImportViewsSubmit", name);
+        try {
+            ensureLoaded();
+            ViewImporter importer = ViewImporter.create(this, userName);
+            importer.checkPermissions();
+            importer.importViews();
+            if (!importer.getFailures().isEmpty()) {
+                throw new Descriptor.FormException("Could not read the views of " + importer.getFailures().keySet()
+                        + ", the views of the other users were imported.", "userName");
+            }
+        } finally {
+            span.end();
         }
+        response.sendRedirect2("/" + getUrl() + "views");
     }
 
     /**
@@ -452,11 +893,18 @@ public class Team extends AbstractModelObject
      * @throws IOException      if so
      * @throws ServletException if so
      */
-    public synchronized void doSubmitDescription(StaplerRequest req, StaplerResponse rsp)
+    public void doSubmitDescription(StaplerRequest req, StaplerResponse rsp)
             throws IOException, ServletException {
         //checkPermission(CONFIGURE);
+        ensureLoaded();
 
-        description = req.getParameter("description");
+        lock.lock();
+        try {
+            description = req.getParameter("description");
+            PluginImpl.getInstance().getRegistry().updated(this);
+        } finally {
+            lock.unlock();
+        }
         save();
         rsp.sendRedirect(".");  // go to the top page
     }
@@ -491,8 +939,83 @@ public class Team extends AbstractModelObject
         return name != null ? name.hashCode() : 0;
     }
 
+    /**
+     * The url relative to {@link Teams}, where the team is found by the search.
+     *
+     * @return the url.
+     */
     @Override
     public String getSearchUrl() {
-        return getUrl();
+        return Util.rawEncode(name) + "/";
+    }
+
+    /**
+     * Caches the result of looking up a property by class in one version of the copy-on-write properties list,
+     * including the classes that there is no property for, and maps the url names of the properties
+     * so that {@link #getDynamic(String, StaplerRequest, StaplerResponse)} doesn't have to search.
+     */
+    private static final class PropertyIndex {
+        /** Cached value for classes without a property. */
+        private static final Object NONE = new Object();
+
+        private final List<TeamProperty> properties;
+        private final ConcurrentMap<Class<?>, Object> byClass = new ConcurrentHashMap<Class<?>, Object>();
+        private final Map<String, TeamProperty> byUrlName;
+
+        /**
+         * Constructor.
+         *
+         * @param properties the list to index, must not be modified afterwards.
+         */
+        private PropertyIndex(List<TeamProperty> properties) {
+            this.properties = properties;
+            Map<String, TeamProperty> urlNames = new HashMap<String, TeamProperty>();
+            for (TeamProperty property : properties) {
+                String urlName = property.getUrlName();
+                if (urlName == null) {
+                    continue;
+                }
+                //The first property wins, just as when the list was searched.
+                if (!urlNames.containsKey(urlName)) {
+                    urlNames.put(urlName, property);
+                }
+                if (urlName.startsWith("/") && !urlNames.containsKey(urlName.substring(1))) {
+                    urlNames.put(urlName.substring(1), property);
+                }
+            }
+            this.byUrlName = urlNames;
+        }
+
+        /**
+         * Gets the property bound to a url token.
+         *
+         * @param token the url token, with or without a leading '/'.
+         * @return the property or null.
+         */
+        private TeamProperty getByUrlName(String token) {
+            return byUrlName.get(token);
+        }
+
+        /**
+         * Gets the first property that is an instance of the class.
+         *
+         * @param clazz the Class to get the property for.
+         * @param <T> the TeamProperty subtype to find.
+         * @return the property or null.
+         */
+        private <T extends TeamProperty> T get(Class<T> clazz) {
+            Object cached = byClass.get(clazz);
+            if (cached == null) {
+                cached = findProperty(properties, clazz);
+                if (cached == null) {
+                    cached = NONE;
+                }
+                byClass.put(clazz, cached);
+            }
+            if (cached == NONE) {
+                return null;
+            }
+            return clazz.cast(cached);
+        }
     }
 }
@@ -0,0 +1,151 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Sony Mobile Communications AB. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.teamview;
+
+import hudson.model.Descriptor;
+import hudson.model.ModelObject;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Imports views from users into a team in the background, at <code>/teams/&lt;team&gt;/import/</code>.
+ * Each submit starts an {@link ImportJob} that can be followed and cancelled at <code>job/&lt;id&gt;/</code>.
+ *
+ * @author Robert Sandell &lt;robert.sandell@sonymobile.com&gt;
+ */
+public final class TeamImport implements ModelObject {
+
+    /**
+     * The number of jobs to remember, the oldest finished jobs are forgotten first.
+     */
+    private static final int MAX_JOBS = 10;
+
+    private final Team team;
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    /**
+     * The jobs by id, oldest first.
+     */
+    private final Map<Integer, ImportJob> jobs = new LinkedHashMap<Integer, ImportJob>();
+
+    /**
+     * Constructor.
+     *
+     * @param team the team to import views into.
+     */
+    TeamImport(Team team) {
+        this.team = team;
+    }
+
+    /**
+     * The team to import views into.
+     *
+     * @return the team.
+     */
+    public Team getTeam() {
+        return team;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.Team_ImportViews();
+    }
+
+    /**
+     * The jobs that are remembered, newest first.
+     *
+     * @return the jobs.
+     */
+    public List<ImportJob> getJobs() {
+        List<ImportJob> list;
+        synchronized (jobs) {
+            list = new ArrayList<ImportJob>(jobs.values());
+        }
+        Collections.reverse(list);
+        return list;
+    }
+
+    /**
+     * Gets a job, bound to <code>job/&lt;id&gt;</code>.
+     *
+     * @param id the id of the job.
+     * @return the job or null if there is no such job.
+     */
+    public ImportJob getJob(String id) {
+        try {
+            synchronized (jobs) {
+                return jobs.get(Integer.valueOf(id));
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Starts an import of the views of the submitted users and redirects to the job.
+     *
+     * @param userName the users to import from, separated by commas or line breaks.
+     * @param request  the request.
+     * @param response the response.
+     * @throws Descriptor.FormException if a user doesn't exist.
+     * @throws IOException              if the redirect fails.
+     */
+    public void doSubmit(@QueryParameter String userName, StaplerRequest request, StaplerResponse response)
+            throws Descriptor.FormException, IOException {
+        team.ensureLoaded();
+        ViewImporter importer = ViewImporter.create(team, userName);
+        importer.checkPermissions();
+        ImportJob job = new ImportJob(team, nextId.incrementAndGet(), importer);
+        synchronized (jobs) {
+            jobs.put(job.getId(), job);
+            forgetOldJobs();
+        }
+        job.start(PluginImpl.getInstance().getImportExecutor());
+        response.sendRedirect2("job/" + job.getId() + "/");
+    }
+
+    /**
+     * Forgets the oldest finished jobs while there are more than {@link #MAX_JOBS}. Must be called holding the lock
+     * of {@link #jobs}.
+     */
+    private void forgetOldJobs() {
+        Iterator<ImportJob> it = jobs.values().iterator();
+        while (jobs.size() > MAX_JOBS && it.hasNext()) {
+            if (it.next().isFinished()) {
+                it.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Sony Mobile Communications AB. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.teamview;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Prefix index over the words in the names and descriptions of the teams in one {@link TeamRegistry.Snapshot},
+ * used to filter the teams page. A query matches the teams that have a word starting with each of the query's
+ * words. The descriptions of teams that haven't been loaded yet are not indexed, see {@link PluginImpl#LAZY_LOAD}.
+ *
+ * @author Robert Sandell &lt;robert.sandell@sonymobile.com&gt;
+ */
+final class TeamIndex {
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final long version;
+    private final List<Team> teams;
+
+    /**
+     * Lower case word to the teams with that word. The sets are compared by identity since a team can be renamed.
+     */
+    private final TreeMap<String, Set<Team>> words = new TreeMap<String, Set<Team>>();
+
+    /**
+     * Builds the index of a snapshot.
+     *
+     * @param snapshot the snapshot of the teams.
+     */
+    TeamIndex(TeamRegistry.Snapshot snapshot) {
+        this.version = snapshot.getVersion();
+        this.teams = snapshot.getTeams();
+        for (Team team : teams) {
+            addWords(team, team.getName());
+            if (team.isLoaded()) {
+                addWords(team, team.getDescription());
+            }
+        }
+    }
+
+    /**
+     * The version of the registry that this index was built from.
+     *
+     * @return the version.
+     */
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Finds the teams matching a query.
+     *
+     * @param query the query, null or empty for all teams.
+     * @return the matching teams sorted by name.
+     */
+    List<Team> find(String query) {
+        String[] terms = split(query);
+        if (terms.length == 0) {
+            return teams;
+        }
+        Set<Team> matches = null;
+        for (String term : terms) {
+            Set<Team> termMatches = newTeamSet();
+            //Every word in the map between the term and the term followed by the highest char starts with the term.
+            for (Set<Team> withWord : words.subMap(term, true, term + Character.MAX_VALUE, false).values()) {
+                termMatches.addAll(withWord);
+            }
+            if (matches == null) {
+                matches = termMatches;
+            } else {
+                matches.retainAll(termMatches);
+            }
+            if (matches.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+        List<Team> found = new ArrayList<Team>(matches.size());
+        for (Team team : teams) {
+            if (matches.contains(team)) {
+                found.add(team);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Indexes the words of a text.
+     *
+     * @param team the team the text belongs to.
+     * @param text the text, may be null.
+     */
+    private void addWords(Team team, String text) {
+        for (String word : split(text)) {
+            Set<Team> withWord = words.get(word);
+            if (withWord == null) {
+                withWord = newTeamSet();
+                words.put(word, withWord);
+            }
+            withWord.add(team);
+        }
+    }
+
+    /**
+     * Splits a text into lower case words.
+     *
+     * @param text the text, may be null.
+     * @return the words.
+     */
+    private static String[] split(String text) {
+        if (text == null) {
+            return new String[0];
+        }
+        List<String> result = new ArrayList<String>();
+        for (String word : WORD_SEPARATOR.split(text.toLowerCase(Locale.ENGLISH))) {
+            if (word.length() > 0) {
+                result.add(word);
+            }
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    /**
+     * Creates an empty set of teams compared by identity.
+     *
+     * @return the set.
+     */
+    private static Set<Team> newTeamSet() {
+        return Collections.newSetFromMap(new IdentityHashMap<Team, Boolean>());
+    }
+}
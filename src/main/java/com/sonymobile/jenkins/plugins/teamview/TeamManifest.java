@@ -0,0 +1,223 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Sony Mobile Communications AB. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.teamview;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.annotations.XStreamAlias;
+import hudson.XmlFile;
+import hudson.util.XStream2;
+import jenkins.model.Jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Index of the names of the teams stored on disk, so that startup doesn't have to list every team directory.
+ * Along with the names it records when the teams directory was last modified. Team directories that are added,
+ * removed or renamed, also outside of Jenkins, change that time, and the directory is then scanned again.
+ * The manifest is only written when it is rebuilt, that is when a team is created or renamed or when the teams
+ * directory has changed. A single instance is kept by {@link PluginImpl} and all of its state is guarded by the
+ * instance.
+ *
+ * @author Robert Sandell &lt;robert.sandell@sonymobile.com&gt;
+ */
+@XStreamAlias("team-manifest")
+final class TeamManifest {
+
+    private static final Logger logger = Logger.getLogger(TeamManifest.class.getName());
+    private static final String MANIFEST_FILE_NAME = "teams-manifest.xml";
+    private static final XStream XSTREAM = new XStream2();
+
+    /**
+     * How coarse the modification times of the file system may be. A change to the teams directory within this time
+     * of the scan may not change its modification time, so the scan can't be trusted until this time has passed.
+     */
+    private static final long TIMESTAMP_RESOLUTION_MILLIS = 2000;
+
+    static {
+        XSTREAM.processAnnotations(TeamManifest.class);
+    }
+
+    /**
+     * The names of the teams.
+     */
+    private TreeSet<String> names = new TreeSet<String>();
+
+    /**
+     * The modification time of the teams directory when it was scanned.
+     */
+    private long teamsDirModified;
+
+    /**
+     * When the teams directory was scanned.
+     */
+    private long scanned;
+
+    /**
+     * The file this manifest is stored in.
+     */
+    private transient XmlFile file;
+
+    /**
+     * Constructor.
+     *
+     * @param file the file the manifest is stored in.
+     */
+    private TeamManifest(XmlFile file) {
+        this.file = file;
+    }
+
+    /**
+     * Gets the manifest of the plugin.
+     *
+     * @return the manifest.
+     * @see PluginImpl#getManifest()
+     */
+    static TeamManifest get() {
+        return PluginImpl.getInstance().getManifest();
+    }
+
+    /**
+     * Reads the manifest of the current Jenkins instance from disk, or builds it from the team directories
+     * if it is missing or unreadable. Only to be called by {@link PluginImpl#getManifest()}.
+     *
+     * @return the manifest.
+     */
+    static TeamManifest load() {
+        XmlFile xml = new XmlFile(XSTREAM, new File(Jenkins.getInstance().getRootDir(), MANIFEST_FILE_NAME));
+        TeamManifest manifest = read(xml);
+        if (manifest == null) {
+            manifest = new TeamManifest(xml);
+            manifest.rescan();
+        }
+        return manifest;
+    }
+
+    /**
+     * Reads the manifest from disk.
+     *
+     * @param xml the file to read.
+     * @return the manifest or null if there is none or it is unreadable.
+     */
+    private static TeamManifest read(XmlFile xml) {
+        if (!xml.exists()) {
+            return null;
+        }
+        try {
+            TeamManifest manifest = (TeamManifest)xml.read();
+            if (manifest.names == null) {
+                logger.warning("No team names in " + xml + ", the team directories will be scanned instead");
+                return null;
+            }
+            manifest.file = xml;
+            return manifest;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to load " + xml + ", the team directories will be scanned instead", e);
+            return null;
+        } catch (ClassCastException e) {
+            logger.log(Level.WARNING, "Unexpected content in " + xml + ", the team directories will be scanned", e);
+            return null;
+        }
+    }
+
+    /**
+     * Rebuilds the manifest by listing the teams directory once, and writes it to disk.
+     */
+    synchronized void rescan() {
+        File root = Team.getRootDir();
+        scanned = System.currentTimeMillis();
+        teamsDirModified = root.lastModified();
+        names = new TreeSet<String>();
+        File[] children = root.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                if (new File(child, Team.CONFIG_FILE_NAME).isFile()) {
+                    names.add(child.getName());
+                }
+            }
+        }
+        save();
+    }
+
+    /**
+     * The names of all the teams, sorted. The teams directory is scanned again first if it has changed.
+     *
+     * @return the team names.
+     */
+    synchronized String[] getTeamNames() {
+        if (isStale()) {
+            rescan();
+        }
+        return names.toArray(new String[names.size()]);
+    }
+
+    /**
+     * Records that a team has been saved. A new team is picked up by scanning the teams directory again, since
+     * creating its directory changed the directory and other changes may have happened meanwhile.
+     *
+     * @param name the name of the team.
+     */
+    synchronized void add(String name) {
+        if (!names.contains(name) || isStale()) {
+            rescan();
+        }
+    }
+
+    /**
+     * Records that a team has been renamed, by scanning the teams directory again.
+     *
+     * @param from the old name of the team.
+     * @param to   the new name of the team.
+     */
+    synchronized void rename(String from, String to) {
+        rescan();
+    }
+
+    /**
+     * Tells if the teams directory may have changed since it was scanned, must be called while holding the lock of
+     * this manifest.
+     *
+     * @return true if the directory has to be scanned again.
+     */
+    private boolean isStale() {
+        long modified = Team.getRootDir().lastModified();
+        return modified != teamsDirModified || modified >= scanned - TIMESTAMP_RESOLUTION_MILLIS;
+    }
+
+    /**
+     * Writes the manifest to disk, must be called while holding the lock of this manifest.
+     * A failure is only logged since the manifest can always be rebuilt.
+     */
+    private void save() {
+        try {
+            file.write(this);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to save " + file, e);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Sony Mobile Communications AB. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.teamview;
+
+import net.sf.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and timers for what the plugin spends its time on, served at <code>/teams/metrics</code>
+ * in the Prometheus text format, or as JSON with <code>?format=json</code>.
+ * Everything is counted since Jenkins started.
+ *
+ * @author Robert Sandell &lt;robert.sandell@sonymobile.com&gt;
+ */
+final class TeamMetrics {
+
+    private static final String PREFIX = "teamviews_";
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /** Reading teams from disk, see {@link Team#load()}. */
+    static final Timer TEAM_LOAD = new Timer("team_load", "Time spent loading teams from disk.");
+    /** Writing team config files. */
+    static final Timer TEAM_SAVE = new Timer("team_save", "Time spent writing team config files.");
+    /** The size of the team config files written. */
+    static final Counter TEAM_SAVE_BYTES = new Counter("team_save_bytes", "Bytes written to team config files.");
+    /** Reading the views of users, see {@link UserUtil#unmarshalViews(String)}. */
+    static final Timer USER_VIEWS_UNMARSHAL = new Timer("user_views_unmarshal",
+            "Time spent reading the views of users.");
+    /** Whole imports of views into teams, see {@link ViewImporter}. */
+    static final Timer VIEW_IMPORT = new Timer("view_import", "Time spent importing views into teams.");
+    /** Requests for a team that exists. */
+    static final Counter DYNAMIC_HITS = new Counter("team_lookup_hits", "Requests for teams that exist.");
+    /** Requests for a team that doesn't exist. */
+    static final Counter DYNAMIC_MISSES = new Counter("team_lookup_misses", "Requests for teams that don't exist.");
+
+    private static final List<Timer> TIMERS = Arrays.asList(TEAM_LOAD, TEAM_SAVE, USER_VIEWS_UNMARSHAL, VIEW_IMPORT);
+    private static final List<Counter> COUNTERS = Arrays.asList(TEAM_SAVE_BYTES, DYNAMIC_HITS, DYNAMIC_MISSES);
+
+    /**
+     * Utility constructor.
+     */
+    private TeamMetrics() {
+    }
+
+    /**
+     * Renders all the metrics in the Prometheus text format.
+     *
+     * @param registry the teams.
+     * @return the metrics.
+     */
+    static String toPrometheus(TeamRegistry registry) {
+        StringBuilder out = new StringBuilder();
+        for (Timer timer : TIMERS) {
+            String name = PREFIX + timer.name + "_seconds";
+            header(out, name, timer.help, "summary");
+            out.append(name).append("_count ").append(timer.getCount()).append('\n');
+            out.append(name).append("_sum ").append(seconds(timer.getTotalNanos())).append('\n');
+            header(out, name + "_max", "Longest of: " + timer.help, "gauge");
+            out.append(name).append("_max ").append(seconds(timer.getMaxNanos())).append('\n');
+        }
+        for (Counter counter : COUNTERS) {
+            String name = PREFIX + counter.name + "_total";
+            header(out, name, counter.help, "counter");
+            out.append(name).append(' ').append(counter.get()).append('\n');
+        }
+        header(out, PREFIX + "team_save_skipped_total", "Saves skipped since the team hadn't changed.", "counter");
+        out.append(PREFIX).append("team_save_skipped_total ").append(Team.getSkippedWriteCount()).append('\n');
+        ViewStatistics views = new ViewStatistics(registry);
+        gauge(out, "teams", "Teams in the registry.", registry.size());
+        gauge(out, "teams_loaded", "Teams that have been loaded from disk.", views.loadedTeams);
+        gauge(out, "views", "Views in the loaded teams.", views.total);
+        gauge(out, "views_per_team_max", "Most views in a loaded team.", views.max);
+        return out.toString();
+    }
+
+    /**
+     * Takes a snapshot of all the metrics as JSON.
+     *
+     * @param registry the teams.
+     * @return the metrics.
+     */
+    static JSONObject toJson(TeamRegistry registry) {
+        JSONObject json = new JSONObject();
+        for (Timer timer : TIMERS) {
+            JSONObject t = new JSONObject();
+            t.put("count", timer.getCount());
+            t.put("totalSeconds", seconds(timer.getTotalNanos()));
+            t.put("maxSeconds", seconds(timer.getMaxNanos()));
+            json.put(timer.name, t);
+        }
+        for (Counter counter : COUNTERS) {
+            json.put(counter.name, counter.get());
+        }
+        json.put("team_save_skipped", Team.getSkippedWriteCount());
+        ViewStatistics views = new ViewStatistics(registry);
+        json.put("teams", registry.size());
+        json.put("teams_loaded", views.loadedTeams);
+        json.put("views", views.total);
+        json.put("views_per_team_max", views.max);
+        return json;
+    }
+
+    /**
+     * Writes the help and type lines of a metric.
+     *
+     * @param out  where to write.
+     * @param name the full name of the metric.
+     * @param help the description.
+     * @param type the Prometheus type.
+     */
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Writes a gauge.
+     *
+     * @param out   where to write.
+     * @param name  the name of the metric, without prefix.
+     * @param help  the description.
+     * @param value the value.
+     */
+    private static void gauge(StringBuilder out, String name, String help, long value) {
+        header(out, PREFIX + name, help, "gauge");
+        out.append(PREFIX).append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Formats nanoseconds as seconds.
+     *
+     * @param nanos the nanoseconds.
+     * @return the seconds.
+     */
+    private static String seconds(long nanos) {
+        return String.format(Locale.ENGLISH, "%.6f", nanos / NANOS_PER_SECOND);
+    }
+
+    /**
+     * A monotonically increasing count.
+     */
+    static final class Counter {
+        private final String name;
+        private final String help;
+        private final AtomicLong value = new AtomicLong();
+
+        /**
+         * Constructor.
+         *
+         * @param name the name of the metric.
+         * @param help the description.
+         */
+        private Counter(String name, String help) {
+            this.name = name;
+            this.help = help;
+        }
+
+        /**
+         * Adds one.
+         */
+        void increment() {
+            value.incrementAndGet();
+        }
+
+        /**
+         * Adds to the count.
+         *
+         * @param amount the amount to add.
+         */
+        void add(long amount) {
+            value.addAndGet(amount);
+        }
+
+        /**
+         * The current count.
+         *
+         * @return the count.
+         */
+        long get() {
+            return value.get();
+        }
+    }
+
+    /**
+     * The number, total time and longest time of an operation.
+     * Used as <code>long started = timer.start(); try { ... } finally { timer.stop(started); }</code>.
+     */
+    static final class Timer {
+        private final String name;
+        private final String help;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        /**
+         * Constructor.
+         *
+         * @param name the name of the metric.
+         * @param help the description.
+         */
+        private Timer(String name, String help) {
+            this.name = name;
+            this.help = help;
+        }
+
+        /**
+         * Starts timing an operation.
+         *
+         * @return the start time to pass to {@link #stop(long)}.
+         */
+        long start() {
+            return System.nanoTime();
+        }
+
+        /**
+         * Records an operation.
+         *
+         * @param started the value returned by {@link #start()}.
+         */
+        void stop(long started) {
+            long nanos = System.nanoTime() - started;
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        /**
+         * The number of operations.
+         *
+         * @return the count.
+         */
+        long getCount() {
+            return count.get();
+        }
+
+        /**
+         * The total time of all operations.
+         *
+         * @return the time in nanoseconds.
+         */
+        long getTotalNanos() {
+            return totalNanos.get();
+        }
+
+        /**
+         * The longest operation.
+         *
+         * @return the time in nanoseconds.
+         */
+        long getMaxNanos() {
+            return maxNanos.get();
+        }
+    }
+
+    /**
+     * The number of views in the teams that are loaded. Teams that are still stubs are left out, so that reading
+     * the metrics doesn't load them.
+     */
+    private static final class ViewStatistics {
+        private long loadedTeams;
+        private long total;
+        private long max;
+
+        /**
+         * Counts the views.
+         *
+         * @param registry the teams.
+         */
+        private ViewStatistics(TeamRegistry registry) {
+            for (Team team : registry.getSnapshot().getTeams()) {
+                if (!team.isLoaded()) {
+                    continue;
+                }
+                loadedTeams++;
+                TeamViewsProperty property = team.getProperty(TeamViewsProperty.class);
+                if (property != null) {
+                    int views = property.getViewCount();
+                    total += views;
+                    max = Math.max(max, views);
+                }
+            }
+        }
+    }
+}
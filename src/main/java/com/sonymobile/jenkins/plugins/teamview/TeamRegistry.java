@@ -0,0 +1,317 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Sony Mobile Communications AB. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.teamview;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The teams known by Jenkins, by name. Lookups never block, and every change bumps a version number
+ * so that listing pages can reuse an immutable, sorted {@link Snapshot} until the set of teams changes.
+ * Creating or renaming a team first reserves the new name, so two requests can't race for the same name.
+ *
+ * @author Robert Sandell &lt;robert.sandell@sonymobile.com&gt;
+ */
+public final class TeamRegistry {
+
+    private final ConcurrentMap<String, Team> teams = new ConcurrentHashMap<String, Team>();
+    private final ConcurrentMap<String, Boolean> reservations = new ConcurrentHashMap<String, Boolean>();
+    private final AtomicLong version = new AtomicLong();
+    private volatile long lastModified = System.currentTimeMillis();
+    private volatile Snapshot snapshot;
+    private volatile boolean ready;
+
+    /**
+     * Gets a team.
+     *
+     * @param name the name of the team.
+     * @return the team or null if there is no team with that name.
+     */
+    public Team get(String name) {
+        if (name == null) {
+            return null;
+        }
+        return teams.get(name);
+    }
+
+    /**
+     * Adds a team unless there already is a team with the same name.
+     *
+     * @param team the team to add.
+     * @return the team that already had the name, or null if the team was added.
+     */
+    public Team putIfAbsent(Team team) {
+        Team existing = teams.putIfAbsent(team.getName(), team);
+        if (existing == null) {
+            changed();
+        }
+        return existing;
+    }
+
+    /**
+     * Adds a team, replacing any team with the same name.
+     *
+     * @param team the team to add.
+     */
+    public void put(Team team) {
+        teams.put(team.getName(), team);
+        changed();
+    }
+
+    /**
+     * Reserves a name for a team that is about to be created or renamed.
+     *
+     * @param name the name.
+     * @return false if there already is a team with that name or someone else has reserved it.
+     * @see #release(String)
+     */
+    public boolean reserve(String name) {
+        if (reservations.putIfAbsent(name, Boolean.TRUE) != null) {
+            return false;
+        }
+        if (teams.containsKey(name)) {
+            reservations.remove(name);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Releases a name reserved with {@link #reserve(String)}.
+     *
+     * @param name the name.
+     */
+    public void release(String name) {
+        reservations.remove(name);
+    }
+
+    /**
+     * Creates a new team and adds it, unless the name is taken.
+     *
+     * @param name        the name of the team.
+     * @param description the description of the team.
+     * @return the new team, or null if the name is already taken.
+     */
+    public Team create(String name, String description) {
+        if (!reserve(name)) {
+            return null;
+        }
+        try {
+            Team team = new Team(name, description);
+            if (teams.putIfAbsent(name, team) != null) {
+                return null;
+            }
+            changed();
+            return team;
+        } finally {
+            release(name);
+        }
+    }
+
+    /**
+     * Renames a team, both on disk and in the registry. The new name is reserved for the duration of the rename,
+     * and the team can be reached under at least one of the names at all times.
+     *
+     * @param team the team to rename.
+     * @param to   the new name.
+     * @return false if the new name is already taken.
+     * @throws IOException if the team directory couldn't be renamed, the team keeps its old name.
+     */
+    public boolean rename(Team team, String to) throws IOException {
+        if (!reserve(to)) {
+            return false;
+        }
+        try {
+            String from = team.getName();
+            team.moveTo(to);
+            teams.put(to, team);
+            teams.remove(from, team);
+            changed();
+            return true;
+        } finally {
+            release(to);
+        }
+    }
+
+    /**
+     * Records that something about a team that is shown in the listings, like its description, has changed,
+     * so that a new snapshot is taken.
+     *
+     * @param team the team.
+     */
+    public void updated(Team team) {
+        if (teams.get(team.getName()) == team) {
+            changed();
+        }
+    }
+
+    /**
+     * Removes a team.
+     *
+     * @param name the name of the team.
+     * @return the removed team or null if there was none.
+     */
+    public Team remove(String name) {
+        Team removed = teams.remove(name);
+        if (removed != null) {
+            changed();
+        }
+        return removed;
+    }
+
+    /**
+     * Removes all teams. The registry isn't ready again until the teams on disk have been loaded.
+     */
+    public void clear() {
+        teams.clear();
+        ready = false;
+        changed();
+    }
+
+    /**
+     * The number of teams.
+     *
+     * @return the number of teams.
+     */
+    public int size() {
+        return teams.size();
+    }
+
+    /**
+     * A read only view of the teams by name.
+     *
+     * @return the map.
+     */
+    public Map<String, Team> asMap() {
+        return Collections.unmodifiableMap(teams);
+    }
+
+    /**
+     * Tells if all the teams on disk have been loaded into the registry, see {@link PluginImpl#getTeam(String)}.
+     *
+     * @return false while the teams are still loading.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Records that all the teams on disk have been loaded.
+     */
+    void setReady() {
+        ready = true;
+        changed();
+    }
+
+    /**
+     * The current version, bumped on every change to the set of teams.
+     *
+     * @return the version.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Gets the teams sorted by name. The same snapshot is returned until the set of teams changes.
+     *
+     * @return the snapshot.
+     */
+    public Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        long currentVersion = version.get();
+        if (current == null || current.getVersion() != currentVersion) {
+            //Sorted on the keys, a concurrent rename can't change those while we sort.
+            List<Team> sorted = new ArrayList<Team>(new TreeMap<String, Team>(teams).values());
+            current = new Snapshot(currentVersion, lastModified, sorted);
+            snapshot = current;
+        }
+        return current;
+    }
+
+    /**
+     * Records a change, must be called after the map has been updated.
+     */
+    private void changed() {
+        lastModified = System.currentTimeMillis();
+        version.incrementAndGet();
+    }
+
+    /**
+     * Immutable, sorted list of the teams at a specific version of the registry.
+     */
+    public static final class Snapshot {
+        private final long version;
+        private final long timestamp;
+        private final List<Team> teams;
+
+        /**
+         * Constructor.
+         *
+         * @param version   the version of the registry.
+         * @param timestamp when the registry was last changed.
+         * @param teams     the teams, sorted.
+         */
+        private Snapshot(long version, long timestamp, List<Team> teams) {
+            this.version = version;
+            this.timestamp = timestamp;
+            this.teams = Collections.unmodifiableList(teams);
+        }
+
+        /**
+         * The version of the registry this snapshot was taken from.
+         *
+         * @return the version.
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * When the registry was last changed before this snapshot was taken.
+         *
+         * @return the time in milliseconds.
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * The teams sorted by name.
+         *
+         * @return the unmodifiable list of teams.
+         */
+        public List<Team> getTeams() {
+            return teams;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Sony Mobile Communications AB. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.teamview;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Lightweight tracing of the operations on teams. Each thread has a stack of open {@link Span}s, and a span that
+ * is started while another is open becomes part of its breakdown. When an outermost span takes longer than
+ * {@link PluginImpl#SLOW_OPERATION_MILLIS} it is logged together with its breakdown, and the most recent of those
+ * are kept for {@link SlowOperationsLink}.
+ * Used as <code>TeamTrace.Span span = TeamTrace.start("op", name); try { ... } finally { span.end(); }</code>.
+ *
+ * @author Robert Sandell &lt;robert.sandell@sonymobile.com&gt;
+ */
+public final class TeamTrace {
+
+    private static final Logger logger = Logger.getLogger(TeamTrace.class.getName());
+
+    /**
+     * The number of slow operations that are kept.
+     */
+    private static final int RECENT_SIZE = 50;
+
+    /**
+     * The most number of nested spans recorded in each span, so that a loop can't use up the memory.
+     */
+    private static final int MAX_CHILDREN = 100;
+
+    private static final String INDENT = "  ";
+
+    /**
+     * The innermost open span of each thread, the rest of the stack is reached through {@link Span#parent}.
+     */
+    private static final ThreadLocal<Span> CURRENT = new ThreadLocal<Span>();
+
+    /**
+     * The recent slow operations, oldest first.
+     */
+    private static final LinkedList<SlowOperation> RECENT = new LinkedList<SlowOperation>();
+
+    /**
+     * A span that does nothing, returned when the tracing is turned off.
+     */
+    private static final Span DISABLED = new Span(null, null, null);
+
+    /**
+     * Utility constructor.
+     */
+    private TeamTrace() {
+    }
+
+    /**
+     * Starts a span on the current thread. The span must be ended on the same thread.
+     *
+     * @param operation what is done, like <code>Team.load</code>.
+     * @param subject   what it is done to, like the name of the team, or null.
+     * @return the span.
+     */
+    static Span start(String operation, String subject) {
+        if (PluginImpl.SLOW_OPERATION_MILLIS < 0) {
+            return DISABLED;
+        }
+        Span span = new Span(operation, subject, CURRENT.get());
+        CURRENT.set(span);
+        return span;
+    }
+
+    /**
+     * The recent slow operations.
+     *
+     * @return the operations, newest first.
+     */
+    static List<SlowOperation> getSlowOperations() {
+        List<SlowOperation> list;
+        synchronized (RECENT) {
+            list = new ArrayList<SlowOperation>(RECENT);
+        }
+        Collections.reverse(list);
+        return list;
+    }
+
+    /**
+     * Keeps and logs a slow operation.
+     *
+     * @param span the outermost span of the operation.
+     */
+    private static void slow(Span span) {
+        StringBuilder breakdown = new StringBuilder();
+        span.describe(breakdown, "");
+        SlowOperation operation = new SlowOperation(span.getName(), span.getMillis(), breakdown.toString());
+        synchronized (RECENT) {
+            RECENT.addLast(operation);
+            if (RECENT.size() > RECENT_SIZE) {
+                RECENT.removeFirst();
+            }
+        }
+        logger.warning("Slow operation on thread " + operation.getThreadName() + ":\n" + operation.getBreakdown());
+    }
+
+    /**
+     * A timed part of an operation.
+     */
+    static final class Span {
+        private final String operation;
+        private final String subject;
+        private final Span parent;
+        private final long started;
+        private long nanos;
+        private List<Span> children;
+        private int droppedChildren;
+
+        /**
+         * Constructor.
+         *
+         * @param operation what is done.
+         * @param subject   what it is done to, or null.
+         * @param parent    the span this is a part of, or null.
+         */
+        private Span(String operation, String subject, Span parent) {
+            this.operation = operation;
+            this.subject = subject;
+            this.parent = parent;
+            this.started = System.nanoTime();
+        }
+
+        /**
+         * Ends the span. If it is the outermost span of the thread and took too long, the operation is recorded.
+         */
+        void end() {
+            if (this == DISABLED) {
+                return;
+            }
+            nanos = System.nanoTime() - started;
+            CURRENT.set(parent);
+            if (parent != null) {
+                parent.add(this);
+            } else if (getMillis() >= PluginImpl.SLOW_OPERATION_MILLIS) {
+                slow(this);
+            }
+        }
+
+        /**
+         * Records a nested span.
+         *
+         * @param child the ended span.
+         */
+        private void add(Span child) {
+            if (children == null) {
+                children = new ArrayList<Span>();
+            }
+            if (children.size() < MAX_CHILDREN) {
+                children.add(child);
+            } else {
+                droppedChildren++;
+            }
+        }
+
+        /**
+         * The operation and its subject.
+         *
+         * @return the name.
+         */
+        private String getName() {
+            if (subject == null) {
+                return operation;
+            }
+            return operation + " " + subject;
+        }
+
+        /**
+         * The duration of the ended span.
+         *
+         * @return the milliseconds.
+         */
+        private long getMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+
+        /**
+         * Writes this span and its nested spans, one per line.
+         *
+         * @param out    where to write.
+         * @param indent the indentation of this span.
+         */
+        private void describe(StringBuilder out, String indent) {
+            out.append(indent).append(getName()).append(": ").append(getMillis()).append(" ms\n");
+            if (children == null) {
+                return;
+            }
+            long accounted = 0;
+            for (Span child : children) {
+                child.describe(out, indent + INDENT);
+                accounted += child.nanos;
+            }
+            if (droppedChildren > 0) {
+                out.append(indent).append(INDENT).append("... ").append(droppedChildren).append(" more\n");
+            } else {
+                out.append(indent).append(INDENT).append("(self): ")
+                        .append(TimeUnit.NANOSECONDS.toMillis(nanos - accounted)).append(" ms\n");
+            }
+        }
+    }
+
+    /**
+     * An operation that took longer than the threshold.
+     */
+    public static final class SlowOperation {
+        private final String name;
+        private final long millis;
+        private final String breakdown;
+        private final long timestamp;
+        private final String threadName;
+
+        /**
+         * Constructor, for an operation that just ended on the current thread.
+         *
+         * @param name      the operation and its subject.
+         * @param millis    how long it took.
+         * @param breakdown the nested spans, one per line.
+         */
+        private SlowOperation(String name, long millis, String breakdown) {
+            this.name = name;
+            this.millis = millis;
+            this.breakdown = breakdown;
+            this.timestamp = System.currentTimeMillis();
+            this.threadName = Thread.currentThread().getName();
+        }
+
+        /**
+         * The operation and its subject.
+         *
+         * @return the name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * How long the operation took.
+         *
+         * @return the milliseconds.
+         */
+        public long getMillis() {
+            return millis;
+        }
+
+        /**
+         * Where the time went.
+         *
+         * @return the operation and its nested spans, one per line.
+         */
+        public String getBreakdown() {
+            return breakdown;
+        }
+
+        /**
+         * When the operation ended.
+         *
+         * @return the time.
+         */
+        public Date getTimestamp() {
+            return new Date(timestamp);
+        }
+
+        /**
+         * The thread the operation ran on.
+         *
+         * @return the name of the thread.
+         */
+        public String getThreadName() {
+            return threadName;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Sony Mobile Communications AB. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.teamview;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.XStreamException;
+import hudson.Util;
+import hudson.XmlFile;
+import hudson.model.View;
+import hudson.util.XStream2;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Storage of the views of a team as one file per view under <code>teams/&lt;name&gt;/views/</code>,
+ * used instead of keeping them in the team's config.xml when {@link PluginImpl#PER_VIEW_STORAGE} is enabled.
+ *
+ * @author Robert Sandell &lt;robert.sandell@sonymobile.com&gt;
+ */
+final class TeamViewStorage {
+
+    private static final Logger logger = Logger.getLogger(TeamViewStorage.class.getName());
+    private static final String VIEWS_DIRECTORY_NAME = "views";
+    private static final String VIEW_FILE_SUFFIX = ".xml";
+    private static final char ESCAPE = '_';
+
+    /**
+     * Used for the view files. The owner is left out since it would drag the whole team into each file,
+     * it is set again when the view is added to the {@link TeamViewsProperty}.
+     */
+    private static final XStream VIEW_XSTREAM = new XStream2();
+
+    /**
+     * Used for the team's config.xml when the views are stored in separate files.
+     */
+    private static final XStream CONFIG_XSTREAM = new XStream2();
+
+    /**
+     * Starts out as {@link PluginImpl#PER_VIEW_STORAGE}, only changed by tests, see {@link #setEnabled(boolean)}.
+     */
+    private static volatile boolean enabled = PluginImpl.PER_VIEW_STORAGE;
+
+    static {
+        VIEW_XSTREAM.omitField(View.class, "owner");
+        CONFIG_XSTREAM.processAnnotations(Team.class);
+        CONFIG_XSTREAM.processAnnotations(TeamViewsProperty.class);
+        CONFIG_XSTREAM.omitField(TeamViewsProperty.class, "views");
+    }
+
+    /**
+     * Utility constructor.
+     */
+    private TeamViewStorage() {
+    }
+
+    /**
+     * If the views should be stored in separate files.
+     *
+     * @return true if so.
+     */
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Changes the storage layout of the running instance, which is otherwise fixed by
+     * {@link PluginImpl#PER_VIEW_STORAGE}. Teams are migrated the next time they are loaded.
+     *
+     * @param perView true to store the views in separate files.
+     */
+    static void setEnabled(boolean perView) {
+        //For tests only, package private so that nothing else can change the layout.
+        enabled = perView;
+    }
+
+    /**
+     * The XStream to write a team's config.xml with when the views are stored in separate files.
+     *
+     * @return the XStream that leaves out the views.
+     */
+    static XStream getConfigXStream() {
+        return CONFIG_XSTREAM;
+    }
+
+    /**
+     * The directory holding the view files of a team.
+     *
+     * @param team the team.
+     * @return the directory, even if it doesn't exist.
+     */
+    static File getViewsDir(Team team) {
+        return new File(new File(Team.getRootDir(), team.getName()), VIEWS_DIRECTORY_NAME);
+    }
+
+    /**
+     * Reads all the view files in a directory. Files that can't be read are logged and mapped to null, so that
+     * they can be kept when the other files are cleaned up.
+     *
+     * @param dir the directory.
+     * @return the views by file name, or null if there is no such directory.
+     */
+    static Map<String, View> readViews(File dir) {
+        File[] files = listViewFiles(dir);
+        if (files == null) {
+            return null;
+        }
+        Map<String, View> views = new TreeMap<String, View>();
+        for (File file : files) {
+            XmlFile xml = new XmlFile(VIEW_XSTREAM, file);
+            View view = null;
+            try {
+                view = (View)xml.read();
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Failed to load " + xml, e);
+            } catch (XStreamException e) {
+                logger.log(Level.SEVERE, "Failed to load " + xml, e);
+            } catch (ClassCastException e) {
+                logger.log(Level.SEVERE, "Failed to load " + xml + ", it doesn't contain a view", e);
+            }
+            views.put(file.getName(), view);
+        }
+        return views;
+    }
+
+    /**
+     * Writes one view to its file.
+     *
+     * @param dir  the directory of the view files.
+     * @param view the view.
+     * @throws IOException if the view can't be written.
+     */
+    static void writeView(File dir, View view) throws IOException {
+        getViewFile(dir, view.getViewName()).write(view);
+    }
+
+    /**
+     * Removes the file of a view.
+     *
+     * @param dir      the directory of the view files.
+     * @param viewName the name of the view.
+     */
+    static void deleteView(File dir, String viewName) {
+        File file = getViewFile(dir, viewName).getFile();
+        if (file.exists() && !file.delete()) {
+            logger.warning("Could not delete " + file);
+        }
+    }
+
+    /**
+     * Removes the view files that don't belong to any of the views, like files written under an older naming scheme.
+     * Files that couldn't be read are kept, so that no view is lost.
+     *
+     * @param dir        the directory of the view files.
+     * @param views      the views.
+     * @param unreadable the names of the files that couldn't be read.
+     */
+    static void deleteOtherViews(File dir, Iterable<View> views, Set<String> unreadable) {
+        Set<String> keep = new HashSet<String>(unreadable);
+        for (View view : views) {
+            keep.add(fileNameOf(view.getViewName()));
+        }
+        File[] files = listViewFiles(dir);
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!keep.contains(file.getName()) && !file.delete()) {
+                logger.warning("Could not delete " + file);
+            }
+        }
+    }
+
+    /**
+     * Lists the view files in a directory.
+     *
+     * @param dir the directory.
+     * @return the files, or null if there is no such directory.
+     */
+    private static File[] listViewFiles(File dir) {
+        return dir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File parent, String fileName) {
+                return fileName.endsWith(VIEW_FILE_SUFFIX);
+            }
+        });
+    }
+
+    /**
+     * Removes the directory of view files, used when going back to storing the views in config.xml.
+     * If some files couldn't be read, they and the directory are kept so that no view is lost.
+     *
+     * @param dir        the directory of the view files.
+     * @param unreadable the names of the files that couldn't be read.
+     */
+    static void deleteViewsDir(File dir, Set<String> unreadable) {
+        if (!unreadable.isEmpty()) {
+            logger.warning("Keeping " + unreadable + " in " + dir + " since they couldn't be read");
+            deleteOtherViews(dir, Collections.<View>emptyList(), unreadable);
+            return;
+        }
+        try {
+            Util.deleteRecursive(dir);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not delete " + dir, e);
+        }
+    }
+
+    /**
+     * The file of a view.
+     *
+     * @param dir      the directory of the view files.
+     * @param viewName the name of the view.
+     * @return the file, even if it doesn't exist.
+     */
+    private static XmlFile getViewFile(File dir, String viewName) {
+        return new XmlFile(VIEW_XSTREAM, new File(dir, fileNameOf(viewName)));
+    }
+
+    /**
+     * The name of the file of a view. Upper case letters are written as an underscore followed by the lower case
+     * letter, and underscores are doubled, so that names that only differ in case get different files also on
+     * file systems that ignore case.
+     *
+     * @param viewName the name of the view.
+     * @return the file name.
+     */
+    static String fileNameOf(String viewName) {
+        String encoded = Util.rawEncode(viewName);
+        StringBuilder fileName = new StringBuilder(encoded.length() + VIEW_FILE_SUFFIX.length());
+        for (int i = 0; i < encoded.length(); i++) {
+            char c = encoded.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                fileName.append(ESCAPE).append(Character.toLowerCase(c));
+            } else if (c == ESCAPE) {
+                fileName.append(ESCAPE).append(ESCAPE);
+            } else {
+                fileName.append(c);
+            }
+        }
+        return fileName.append(VIEW_FILE_SUFFIX).toString();
+    }
+}
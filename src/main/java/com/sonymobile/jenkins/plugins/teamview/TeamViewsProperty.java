@@ -25,6 +25,7 @@
 package com.sonymobile.jenkins.plugins.teamview;
 
 import com.thoughtworks.xstream.annotations.XStreamAlias;
+import hudson.BulkChange;
 import hudson.Extension;
 import hudson.Util;
 import hudson.model.Action;
@@ -45,17 +46,29 @@ import org.acegisecurity.Authentication;
 import org.kohsuke.stapler.HttpRedirect;
 import org.kohsuke.stapler.HttpResponse;
 import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerFallback;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 
 import javax.servlet.ServletException;
+import java.io.File;
 import java.io.IOException;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A class that remembers team views.
@@ -64,14 +77,62 @@ import java.util.concurrent.CopyOnWriteArrayList;
  */
 @XStreamAlias("teamviewsproperty")
 public final class TeamViewsProperty extends TeamProperty implements ViewGroup, Action, StaplerFallback {
+
+    /**
+     * Set while the current thread adds or deletes a view, since those operations mark the affected view themselves.
+     */
+    private static final ThreadLocal<Boolean> TRACKED_CHANGE = new ThreadLocal<Boolean>();
+
     private String primaryViewName;
     /**
      * Always hold at least one view.
      */
     private CopyOnWriteArrayList<View> views = new CopyOnWriteArrayList<View>();
 
+    /**
+     * The names of the views in order, only written when the views are stored in separate files,
+     * see {@link #updateViewOrder()}.
+     */
+    private List<String> viewOrder;
+
     private transient ViewGroupMixIn viewGroupMixIn;
 
+    /**
+     * The views by name, kept in step with {@link #views} so that looking up a view doesn't scan the list.
+     * If two views share a name the first one in the list is indexed, just as the list would be searched.
+     */
+    private transient ConcurrentMap<String, View> viewsByName;
+
+    /**
+     * Bumped on every change that can affect which view is the primary one.
+     */
+    private transient AtomicInteger viewsVersion;
+
+    /**
+     * The last resolved primary view, valid as long as its version is the current {@link #viewsVersion}.
+     */
+    private transient volatile ResolvedView primaryView;
+
+    /**
+     * Views that need to be written when the views are stored in separate files, see {@link TeamViewStorage}.
+     */
+    private transient Set<View> dirtyViews;
+
+    /**
+     * Names of views whose files need to be removed when the views are stored in separate files.
+     */
+    private transient Set<String> deletedViewNames;
+
+    /**
+     * If the views directory has files that don't belong to any view, and should be removed on the next write.
+     */
+    private transient volatile boolean obsoleteViewFiles;
+
+    /**
+     * The names of the view files that couldn't be read when the team was loaded, and must not be removed.
+     */
+    private transient volatile Set<String> unreadableViewFiles;
+
     /**
      * Standard getter for the team.
      *
@@ -103,6 +164,13 @@ public final class TeamViewsProperty extends TeamProperty implements ViewGroup,
             views.add(new ListView("Default", this));
         }
 
+        dirtyViews = Collections.newSetFromMap(new ConcurrentHashMap<View, Boolean>());
+        deletedViewNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        unreadableViewFiles = Collections.emptySet();
+        viewsByName = new ConcurrentHashMap<String, View>();
+        viewsVersion = new AtomicInteger();
+        reindexViews();
+
         viewGroupMixIn = new ViewGroupMixIn(this) {
 
             @Override
@@ -117,7 +185,7 @@ public final class TeamViewsProperty extends TeamProperty implements ViewGroup,
 
             @Override
             protected void primaryView(String name) {
-                primaryViewName = name;
+                setPrimaryViewName(name);
             }
         };
 
@@ -140,6 +208,34 @@ public final class TeamViewsProperty extends TeamProperty implements ViewGroup,
      */
     public void setPrimaryViewName(String primaryViewName) {
         this.primaryViewName = primaryViewName;
+        viewsVersion.incrementAndGet();
+    }
+
+    /**
+     * Rebuilds the name index from the list of views.
+     */
+    private void reindexViews() {
+        viewsByName.clear();
+        for (View view : views) {
+            viewsByName.putIfAbsent(view.getViewName(), view);
+        }
+        viewsVersion.incrementAndGet();
+    }
+
+    /**
+     * Points the index entry for one name at the first view in the list with that name, or removes the entry
+     * if there is no such view any more.
+     *
+     * @param name the view name.
+     */
+    private void reindexView(String name) {
+        for (View view : views) {
+            if (view.getViewName().equals(name)) {
+                viewsByName.put(name, view);
+                return;
+            }
+        }
+        viewsByName.remove(name);
     }
 
     ///// ViewGroup methods /////
@@ -150,17 +246,238 @@ public final class TeamViewsProperty extends TeamProperty implements ViewGroup,
 
     @Override
     public void save() throws IOException {
+        if (TeamViewStorage.isEnabled() && TRACKED_CHANGE.get() == null) {
+            markChangedView();
+        }
         team.save();
     }
 
+    /**
+     * Marks the view that is being saved as dirty. A view saves itself through its owner, so the view is found
+     * among the ancestors of the current request. If it can't be found all views are marked.
+     */
+    private void markChangedView() {
+        View view = null;
+        if (Stapler.getCurrentRequest() != null) {
+            view = Stapler.getCurrentRequest().findAncestorObject(View.class);
+        }
+        if (view != null && view.getOwner() == this) {
+            dirtyViews.add(view);
+        } else {
+            markAllViewsDirty();
+        }
+    }
+
+    /**
+     * Marks all views as needing to be written on the next save, when the views are stored in separate files.
+     */
+    void markAllViewsDirty() {
+        dirtyViews.addAll(views);
+    }
+
+    /**
+     * Replaces the views with the ones stored in separate files, if there are any, and migrates between the two
+     * storage layouts if needed. Called when the team has been loaded.
+     *
+     * @return true if the team needs to be written to complete a migration.
+     */
+    boolean loadViewFiles() {
+        File dir = TeamViewStorage.getViewsDir(team);
+        Map<String, View> stored = TeamViewStorage.readViews(dir);
+        boolean misnamed = false;
+        List<View> readable = new ArrayList<View>();
+        Set<String> unreadable = new HashSet<String>();
+        if (stored != null) {
+            for (Map.Entry<String, View> entry : stored.entrySet()) {
+                View view = entry.getValue();
+                if (view == null) {
+                    unreadable.add(entry.getKey());
+                } else {
+                    readable.add(view);
+                    if (!entry.getKey().equals(TeamViewStorage.fileNameOf(view.getViewName()))) {
+                        misnamed = true;
+                    }
+                }
+            }
+        }
+        unreadableViewFiles = unreadable;
+        if (!readable.isEmpty()) {
+            BulkChange bc = new BulkChange(team);
+            try {
+                views.clear();
+                for (View view : inViewOrder(readable)) {
+                    viewGroupMixIn.addView(view);
+                }
+            } catch (IOException e) {
+                //Can't happen, the team isn't saved during the bulk change.
+                throw new IllegalStateException(e);
+            } finally {
+                bc.abort();
+                reindexViews();
+            }
+        }
+        dirtyViews.clear();
+        deletedViewNames.clear();
+        if (TeamViewStorage.isEnabled()) {
+            if (stored == null || misnamed) {
+                //The views are still in config.xml, or in files named the way they used to be
+                markAllViewsDirty();
+                obsoleteViewFiles = misnamed;
+                return true;
+            }
+        } else if (!readable.isEmpty()) {
+            //Going back to keeping the views in config.xml
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes the view files after the views have been written to config.xml, except the files that couldn't be
+     * read when the team was loaded.
+     */
+    void deleteViewFiles() {
+        TeamViewStorage.deleteViewsDir(TeamViewStorage.getViewsDir(team), unreadableViewFiles);
+    }
+
+    /**
+     * Sorts views read from their files in the order they were saved in. Views that aren't in the saved order,
+     * like views added by hand, are put last.
+     *
+     * @param stored the views in the order of their file names.
+     * @return the views in the saved order.
+     */
+    private List<View> inViewOrder(Collection<View> stored) {
+        List<View> sorted = new ArrayList<View>(stored);
+        if (viewOrder == null) {
+            return sorted;
+        }
+        final Map<String, Integer> positions = new HashMap<String, Integer>();
+        for (int i = 0; i < viewOrder.size(); i++) {
+            if (!positions.containsKey(viewOrder.get(i))) {
+                positions.put(viewOrder.get(i), i);
+            }
+        }
+        //A stable sort, so the views that aren't in the order keep the order of their files.
+        Collections.sort(sorted, new Comparator<View>() {
+            @Override
+            public int compare(View a, View b) {
+                return position(a).compareTo(position(b));
+            }
+
+            /**
+             * The position of a view in the saved order.
+             *
+             * @param view the view.
+             * @return the position, or the largest integer if it isn't in the order.
+             */
+            private Integer position(View view) {
+                Integer position = positions.get(view.getViewName());
+                if (position == null) {
+                    return Integer.MAX_VALUE;
+                }
+                return position;
+            }
+        });
+        return sorted;
+    }
+
+    /**
+     * Records the order of the views so that it is written to config.xml when the views are stored in
+     * separate files, where the order would otherwise be lost. Called before the team is serialized.
+     */
+    void updateViewOrder() {
+        if (!TeamViewStorage.isEnabled()) {
+            viewOrder = null;
+            return;
+        }
+        viewOrder = getViewNames();
+    }
+
+    /**
+     * The names of the views in the order they are kept in, which {@link #getViews()} doesn't keep.
+     *
+     * @return the names.
+     */
+    List<String> getViewNames() {
+        List<String> names = new ArrayList<String>(views.size());
+        for (View view : views) {
+            names.add(view.getViewName());
+        }
+        return names;
+    }
+
+    /**
+     * Writes the dirty views to their files and removes the files of deleted views.
+     * Called when the team is written with the views stored in separate files.
+     *
+     * @return true if any file was written or removed.
+     * @throws IOException if a view can't be written.
+     */
+    boolean writeViewFiles() throws IOException {
+        boolean written = false;
+        File dir = TeamViewStorage.getViewsDir(team);
+        for (Iterator<String> it = deletedViewNames.iterator(); it.hasNext();) {
+            String name = it.next();
+            it.remove();
+            if (getView(name) == null) {
+                TeamViewStorage.deleteView(dir, name);
+                written = true;
+            }
+        }
+        for (Iterator<View> it = dirtyViews.iterator(); it.hasNext();) {
+            View view = it.next();
+            it.remove();
+            if (views.contains(view)) {
+                try {
+                    TeamViewStorage.writeView(dir, view);
+                    written = true;
+                } catch (IOException e) {
+                    dirtyViews.add(view);
+                    throw e;
+                }
+            }
+        }
+        if (obsoleteViewFiles) {
+            //Only after the views have been written under their current file names.
+            obsoleteViewFiles = false;
+            TeamViewStorage.deleteOtherViews(dir, views, unreadableViewFiles);
+            written = true;
+        }
+        return written;
+    }
+
     @Override
     public Collection<View> getViews() {
         return viewGroupMixIn.getViews();
     }
 
+    /**
+     * The number of views, without checking any permissions.
+     *
+     * @return the number of views.
+     */
+    int getViewCount() {
+        return views.size();
+    }
+
     @Override
     public View getView(String name) {
-        return viewGroupMixIn.getView(name);
+        if (name == null) {
+            return null;
+        }
+        View view = viewsByName.get(name);
+        if (view != null) {
+            return view;
+        }
+        if (!name.equals(primaryViewName)) {
+            //Same fallback as the ViewGroupMixIn, to a sub view of the primary view if that is a ViewGroup.
+            View primary = getPrimaryView();
+            if (primary instanceof ViewGroup) {
+                return ((ViewGroup)primary).getView(name);
+            }
+        }
+        return null;
     }
 
     @Override
@@ -170,12 +487,30 @@ public final class TeamViewsProperty extends TeamProperty implements ViewGroup,
 
     @Override
     public void deleteView(View view) throws IOException {
-        viewGroupMixIn.deleteView(view);
+        if (TeamViewStorage.isEnabled()) {
+            dirtyViews.remove(view);
+            deletedViewNames.add(view.getViewName());
+        }
+        TRACKED_CHANGE.set(Boolean.TRUE);
+        try {
+            viewGroupMixIn.deleteView(view);
+        } finally {
+            TRACKED_CHANGE.remove();
+            reindexView(view.getViewName());
+            viewsVersion.incrementAndGet();
+        }
     }
 
     @Override
     public void onViewRenamed(View view, String oldName, String newName) {
+        if (TeamViewStorage.isEnabled()) {
+            deletedViewNames.add(oldName);
+            dirtyViews.add(view);
+        }
         viewGroupMixIn.onViewRenamed(view, oldName, newName);
+        reindexView(oldName);
+        reindexView(newName);
+        viewsVersion.incrementAndGet();
     }
 
     /**
@@ -185,12 +520,95 @@ public final class TeamViewsProperty extends TeamProperty implements ViewGroup,
      * @throws IOException if the View can't be added.
      */
     public void addView(View view) throws IOException {
-        viewGroupMixIn.addView(view);
+        if (TeamViewStorage.isEnabled()) {
+            dirtyViews.add(view);
+        }
+        TRACKED_CHANGE.set(Boolean.TRUE);
+        try {
+            viewGroupMixIn.addView(view);
+        } finally {
+            TRACKED_CHANGE.remove();
+            viewsByName.putIfAbsent(view.getViewName(), view);
+            viewsVersion.incrementAndGet();
+        }
+    }
+
+    /**
+     * Adds many views with a single update of the views list and a single save of the team.
+     *
+     * @param newViews the views to add.
+     * @throws IOException if the team can't be saved.
+     */
+    public void addViews(Collection<? extends View> newViews) throws IOException {
+        if (newViews.isEmpty()) {
+            return;
+        }
+        final List<View> added = new ArrayList<View>(newViews.size());
+        //Lets the mixin set the owner of each view, on a plain list so the copy-on-write list is only copied once.
+        ViewGroupMixIn staging = new ViewGroupMixIn(this) {
+            @Override
+            protected List<View> views() {
+                return added;
+            }
+
+            @Override
+            protected String primaryView() {
+                return primaryViewName;
+            }
+
+            @Override
+            protected void primaryView(String name) {
+                setPrimaryViewName(name);
+            }
+        };
+        BulkChange bc = new BulkChange(team);
+        try {
+            TRACKED_CHANGE.set(Boolean.TRUE);
+            try {
+                for (View view : newViews) {
+                    staging.addView(view);
+                }
+            } finally {
+                TRACKED_CHANGE.remove();
+            }
+            views.addAll(added);
+            for (View view : added) {
+                viewsByName.putIfAbsent(view.getViewName(), view);
+            }
+            viewsVersion.incrementAndGet();
+            if (TeamViewStorage.isEnabled()) {
+                dirtyViews.addAll(added);
+            }
+            bc.commit();
+        } finally {
+            bc.abort();
+        }
     }
 
     @Override
     public View getPrimaryView() {
-        return viewGroupMixIn.getPrimaryView();
+        ResolvedView resolved = primaryView;
+        int version = viewsVersion.get();
+        if (resolved != null && resolved.version == version) {
+            return resolved.view;
+        }
+        //Only the resolving is traced, the cached view is returned on every request.
+        TeamTrace.Span span = TeamTrace.start("TeamViewsProperty.getPrimaryView", primaryViewName);
+        try {
+            View view = null;
+            if (primaryViewName != null) {
+                view = viewsByName.get(primaryViewName);
+            }
+            if (view == null) {
+                // fallback
+                view = views.get(0);
+            }
+            //Stored with the version read before resolving, so a change while resolving makes it stale right away.
+            primaryView = new ResolvedView(version, view);
+            return view;
+        } finally {
+            span.end();
+        }
     }
 
     /**
@@ -214,7 +632,19 @@ public final class TeamViewsProperty extends TeamProperty implements ViewGroup,
      */
     public synchronized void doCreateView(StaplerRequest req, StaplerResponse rsp)
             throws IOException, ServletException, ParseException, Descriptor.FormException {
-        addView(View.create(req, rsp, this));
+        TeamTrace.Span span = TeamTrace.start("TeamViewsProperty.doCreateView", team.getName());
+        try {
+            TeamTrace.Span create = TeamTrace.start("View.create", null);
+            View view;
+            try {
+                view = View.create(req, rsp, this);
+            } finally {
+                create.end();
+            }
+            addView(view);
+        } finally {
+            span.end();
+        }
     }
 
     @Override
@@ -330,4 +760,23 @@ public final class TeamViewsProperty extends TeamProperty implements ViewGroup,
     public Object getStaplerFallback() {
         return getPrimaryView();
     }
+
+    /**
+     * A view resolved at a specific version of the views.
+     */
+    private static final class ResolvedView {
+        private final int version;
+        private final View view;
+
+        /**
+         * Constructor.
+         *
+         * @param version the version of the views when the view was resolved.
+         * @param view    the view.
+         */
+        private ResolvedView(int version, View view) {
+            this.version = version;
+            this.view = view;
+        }
+    }
 }
@@ -0,0 +1,122 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Sony Mobile Communications AB. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.teamview;
+
+import hudson.util.DaemonThreadFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind for {@link Team#save()}. A save only marks the team as dirty, and all the teams that become dirty
+ * within the configured window are written once when the window closes.
+ *
+ * @author Robert Sandell &lt;robert.sandell@sonymobile.com&gt;
+ */
+final class TeamWriter {
+
+    private static final Logger logger = Logger.getLogger(TeamWriter.class.getName());
+
+    private final long delay;
+    private final ScheduledExecutorService executor;
+
+    /**
+     * The teams waiting to be written. Compared by identity since a team can be renamed while it is waiting.
+     */
+    private final Set<Team> dirty = Collections.newSetFromMap(new IdentityHashMap<Team, Boolean>());
+
+    private boolean shutdown = false;
+
+    /**
+     * Constructor.
+     *
+     * @param delay the number of milliseconds to wait for more saves before writing.
+     */
+    TeamWriter(long delay) {
+        this.delay = delay;
+        ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory());
+        pool.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.executor = pool;
+    }
+
+    /**
+     * Marks the team as dirty, it will be written when the current window closes.
+     *
+     * @param team the team to save.
+     * @return false if the writer has been shut down and the caller needs to write the team itself.
+     */
+    synchronized boolean schedule(Team team) {
+        if (shutdown) {
+            return false;
+        }
+        if (dirty.add(team) && dirty.size() == 1) {
+            executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        return true;
+    }
+
+    /**
+     * Writes all the dirty teams.
+     */
+    void flush() {
+        List<Team> teams;
+        synchronized (this) {
+            teams = new ArrayList<Team>(dirty);
+            dirty.clear();
+        }
+        for (Team team : teams) {
+            try {
+                team.writeConfig();
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Failed to save team " + team.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Stops accepting new saves and writes everything that is still dirty.
+     */
+    void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+        }
+        executor.shutdown();
+        flush();
+    }
+}
@@ -26,19 +26,27 @@ package com.sonymobile.jenkins.plugins.teamview;
 
 import hudson.Extension;
 import hudson.Functions;
+import hudson.model.AbstractModelObject;
+import hudson.model.AutoCompletionCandidates;
 import hudson.model.RootAction;
+import hudson.search.SearchIndex;
+import hudson.search.SearchIndexBuilder;
+import hudson.search.SearchItem;
 import hudson.util.FormValidation;
+import jenkins.model.Jenkins;
 import jenkins.model.ModelObjectWithContextMenu;
 import net.sf.json.JSONObject;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 
+import hudson.model.Descriptor.FormException;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import hudson.model.Descriptor.FormException;
 
 import static com.sonymobile.jenkins.plugins.teamview.PluginImpl.getIconPath;
 
@@ -48,10 +56,24 @@ import static com.sonymobile.jenkins.plugins.teamview.PluginImpl.getIconPath;
  * @author Tomas Westling &lt;tomas.westling&gt;
  */
 @Extension
-public class Teams implements RootAction, ModelObjectWithContextMenu {
+public class Teams extends AbstractModelObject implements RootAction, ModelObjectWithContextMenu {
     /** the URL name for the Teams page.*/
     public static final String TEAMS_URL_NAME = "teams";
 
+    /**
+     * The maximum number of suggestions for the filter on the teams page.
+     */
+    private static final int MAX_SUGGESTIONS = 20;
+
+    /**
+     * The context menu entries of the teams, built from one snapshot of the registry.
+     */
+    private volatile TeamMenuItems menuItems;
+
+    /**
+     * Prefix index of the teams, built from one snapshot of the registry.
+     */
+    private volatile TeamIndex teamIndex;
 
     @Override
     public String getIconFileName() {
@@ -68,6 +90,29 @@ public class Teams implements RootAction, ModelObjectWithContextMenu {
         return TEAMS_URL_NAME;
     }
 
+    @Override
+    public String getSearchUrl() {
+        return TEAMS_URL_NAME + "/";
+    }
+
+    @Override
+    protected SearchIndexBuilder makeSearchIndex() {
+        return super.makeSearchIndex().add(new SearchIndex() {
+            @Override
+            public void find(String token, List<SearchItem> result) {
+                Team team = PluginImpl.getInstance().getTeam(token);
+                if (team != null) {
+                    result.add(team);
+                }
+            }
+
+            @Override
+            public void suggest(String token, List<SearchItem> result) {
+                result.addAll(findTeams(token));
+            }
+        });
+    }
+
     /**
      * Used when redirected to a team.
      * @param token the name of the team.
@@ -76,8 +121,14 @@ public class Teams implements RootAction, ModelObjectWithContextMenu {
      * @return the correct Team.
      */
     public Team getDynamic(String token, StaplerRequest req, StaplerResponse resp) {
-        Map<String, Team> teams = PluginImpl.getInstance().getTeams();
-        return teams.get(token);
+        Team team = PluginImpl.getInstance().getTeam(token);
+        if (team != null) {
+            TeamMetrics.DYNAMIC_HITS.increment();
+            team.ensureLoaded();
+        } else {
+            TeamMetrics.DYNAMIC_MISSES.increment();
+        }
+        return team;
     }
 
     /**
@@ -87,7 +138,7 @@ public class Teams implements RootAction, ModelObjectWithContextMenu {
      * @param response the StaplerResponse.
      * @throws Exception if anything goes wrong with the form.
      */
-    public synchronized void doConfigSubmit(StaplerRequest request, StaplerResponse response)
+    public void doConfigSubmit(StaplerRequest request, StaplerResponse response)
             throws Exception {
         JSONObject form = request.getSubmittedForm();
         String name = form.getString("name");
@@ -95,12 +146,15 @@ public class Teams implements RootAction, ModelObjectWithContextMenu {
         if (name == null || name.isEmpty()) {
             throw new FormException("The team name cannot be empty", "name");
         }
-        Team team = PluginImpl.getInstance().getTeams().get(name);
-        if (team != null) {
+        PluginImpl plugin = PluginImpl.getInstance();
+        Team team = null;
+        //While the teams are loading, the name can belong to a team that isn't in the registry yet.
+        if (plugin.getTeam(name) == null) {
+            team = plugin.getRegistry().create(name, description);
+        }
+        if (team == null) {
             throw new FormException("A team with name: " + name + " already exists!", "name");
         }
-        team = new Team(name, description);
-        PluginImpl.getInstance().addTeam(team);
         team.save();
         response.sendRedirect2(".");
     }
@@ -115,23 +169,156 @@ public class Teams implements RootAction, ModelObjectWithContextMenu {
         if (value == null || value.isEmpty()) {
             return FormValidation.error("Please enter a name!");
         }
-        Team team = PluginImpl.getInstance().getTeams().get(value);
+        Team team = PluginImpl.getInstance().getTeam(value);
         if (team != null) {
             return FormValidation.error("A team with name: " + value + " already exists!");
         }
         return FormValidation.ok();
     }
 
+    /**
+     * Tells if the teams are still being loaded in the background, in which case the listings are incomplete.
+     *
+     * @return true while loading.
+     */
+    public boolean isLoading() {
+        return !PluginImpl.getInstance().getRegistry().isReady();
+    }
+
+    /**
+     * Serves the metrics of the plugin, in the Prometheus text format or as JSON with <code>?format=json</code>.
+     * Only for administrators.
+     *
+     * @param request  the request.
+     * @param response the response.
+     * @throws IOException if the response can't be written.
+     */
+    public void doMetrics(StaplerRequest request, StaplerResponse response) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        TeamRegistry registry = PluginImpl.getInstance().getRegistry();
+        response.setHeader("Cache-Control", "no-cache");
+        if ("json".equals(request.getParameter("format"))) {
+            response.setContentType("application/json;charset=UTF-8");
+            response.getWriter().print(TeamMetrics.toJson(registry).toString());
+        } else {
+            response.setContentType("text/plain;version=0.0.4;charset=UTF-8");
+            response.getWriter().print(TeamMetrics.toPrometheus(registry));
+        }
+    }
+
+    /**
+     * Finds the teams with a name or description that has words starting with each of the words in a query.
+     *
+     * @param query the query, null or empty for all teams.
+     * @return the matching teams sorted by name.
+     */
+    public List<Team> findTeams(String query) {
+        return getTeamIndex().find(query);
+    }
+
+    /**
+     * The number of teams to show on each page.
+     *
+     * @return the page size.
+     */
+    public int getPageSize() {
+        return PluginImpl.PAGE_SIZE;
+    }
+
+    /**
+     * Suggests team names for the filter on the teams page.
+     *
+     * @param value the text typed so far.
+     * @return the names of the matching teams.
+     */
+    public AutoCompletionCandidates doAutoCompleteQuery(@QueryParameter String value) {
+        AutoCompletionCandidates candidates = new AutoCompletionCandidates();
+        for (Team team : findTeams(value)) {
+            if (candidates.getValues().size() >= MAX_SUGGESTIONS) {
+                break;
+            }
+            candidates.add(team.getName());
+        }
+        return candidates;
+    }
+
+    /**
+     * Gets the prefix index of the teams, building a new one if the teams have changed since the last one.
+     *
+     * @return the index.
+     */
+    private TeamIndex getTeamIndex() {
+        TeamRegistry.Snapshot snapshot = PluginImpl.getInstance().getRegistry().getSnapshot();
+        TeamIndex index = teamIndex;
+        if (index == null || index.getVersion() != snapshot.getVersion()) {
+            index = new TeamIndex(snapshot);
+            teamIndex = index;
+        }
+        return index;
+    }
+
     @Override
     public ContextMenu doContextMenu(StaplerRequest request, StaplerResponse response) throws Exception {
+        TeamRegistry.Snapshot snapshot = PluginImpl.getInstance().getRegistry().getSnapshot();
+        //The create entry is localized, so the locale is part of the tag.
+        String etag = "\"" + snapshot.getVersion() + '-' + request.getLocale() + "\"";
+        response.setHeader("ETag", etag);
+        response.setHeader("Vary", "Accept-Language");
+        if (etag.equals(request.getHeader("If-None-Match"))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return null;
+        }
+        if (request.getHeader("If-None-Match") == null && request.checkIfModified(snapshot.getTimestamp(), response)) {
+            return null;
+        }
         ContextMenu menu = new ContextMenu();
         menu.add("createTeam", getIconPath("images/24x24/new-package.png"), Messages.Teams_Create());
+        menu.items.addAll(getMenuItems(snapshot));
+        return menu;
+    }
+
+    /**
+     * Gets the context menu entries of the teams in a snapshot, reusing the ones built for the previous request
+     * if the teams haven't changed since.
+     *
+     * @param snapshot the snapshot of the teams.
+     * @return the menu items.
+     */
+    private List<MenuItem> getMenuItems(TeamRegistry.Snapshot snapshot) {
         String uIcon = getIconPath("images/24x24/user.png");
-        List<Team> teams = new ArrayList<Team>(PluginImpl.getInstance().getTeams().values());
-        Collections.sort(teams);
-        for (Team t : teams) {
+        TeamMenuItems cached = menuItems;
+        if (cached != null && cached.version == snapshot.getVersion() && cached.icon.equals(uIcon)) {
+            return cached.items;
+        }
+        ContextMenu menu = new ContextMenu();
+        for (Team t : snapshot.getTeams()) {
             menu.add(Functions.encode(t.getUrlName()), uIcon, t.getName());
         }
-        return menu;
+        cached = new TeamMenuItems(snapshot.getVersion(), uIcon, Collections.unmodifiableList(
+                new ArrayList<MenuItem>(menu.items)));
+        menuItems = cached;
+        return cached.items;
+    }
+
+    /**
+     * Context menu entries of the teams at a version of the registry.
+     */
+    private static final class TeamMenuItems {
+        private final long version;
+        private final String icon;
+        private final List<MenuItem> items;
+
+        /**
+         * Constructor.
+         *
+         * @param version the version of the registry.
+         * @param icon    the icon path used in the entries.
+         * @param items   the entries.
+         */
+        private TeamMenuItems(long version, String icon, List<MenuItem> items) {
+            this.version = version;
+            this.icon = icon;
+            this.items = items;
+        }
     }
 }
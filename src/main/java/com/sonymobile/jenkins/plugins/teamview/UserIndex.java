@@ -0,0 +1,191 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Sony Mobile Communications AB. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.teamview;
+
+import hudson.Extension;
+import hudson.Functions;
+import hudson.XmlFile;
+import hudson.model.PeriodicWork;
+import hudson.model.Saveable;
+import hudson.model.User;
+import hudson.model.listeners.SaveableListener;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * In memory index of the storage ids of the users that have a config file under <code>JENKINS_HOME/users</code>,
+ * so that validating and completing user names doesn't have to touch the disk. The directory is listed the first
+ * time the index is used and then periodically by {@link Refresher}, and users are added as they are saved.
+ * Like the file system, the index ignores case when the users directory does.
+ *
+ * @author Robert Sandell &lt;robert.sandell@sonymobile.com&gt;
+ */
+public final class UserIndex {
+
+    private static final String CONFIG_FILE_NAME = "config.xml";
+
+    private static UserIndex instance;
+
+    private final File usersDir;
+    private final boolean ignoreCase;
+    private volatile NavigableSet<String> ids;
+
+    /**
+     * Constructor.
+     *
+     * @param usersDir the directory holding a directory per user.
+     */
+    private UserIndex(File usersDir) {
+        this.usersDir = usersDir;
+        this.ignoreCase = Functions.isWindows() || ignoresCase(usersDir);
+        refresh();
+    }
+
+    /**
+     * Checks if the file system a directory is on ignores case, by looking the directory up with its name in
+     * upper case.
+     *
+     * @param dir the directory.
+     * @return true if the directory is found under both names.
+     */
+    private static boolean ignoresCase(File dir) {
+        File upper = new File(dir.getParentFile(), dir.getName().toUpperCase(Locale.ENGLISH));
+        return !upper.getName().equals(dir.getName()) && dir.isDirectory() && upper.isDirectory();
+    }
+
+    /**
+     * Gets the index of the current Jenkins instance, listing the users directory if this is the first use.
+     *
+     * @return the index.
+     */
+    static synchronized UserIndex get() {
+        File dir = UserUtil.getRootDir();
+        if (instance == null || !instance.usersDir.equals(dir)) {
+            instance = new UserIndex(dir);
+        }
+        return instance;
+    }
+
+    /**
+     * Lists the users directory again, to pick up users that have been removed or added behind Jenkins' back.
+     * Synchronized with {@link #add(String)} so that a user saved while the directory is listed isn't lost when the
+     * new listing replaces the old one.
+     */
+    synchronized void refresh() {
+        NavigableSet<String> found;
+        if (ignoreCase) {
+            found = new ConcurrentSkipListSet<String>(String.CASE_INSENSITIVE_ORDER);
+        } else {
+            found = new ConcurrentSkipListSet<String>();
+        }
+        File[] children = usersDir.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                if (new File(child, CONFIG_FILE_NAME).isFile()) {
+                    found.add(child.getName());
+                }
+            }
+        }
+        ids = found;
+    }
+
+    /**
+     * Checks if there is a user with a storage id.
+     *
+     * @param storageId the storage id, see {@link UserUtil#toStorageId(String)}.
+     * @return true if the user has a config file.
+     */
+    boolean contains(String storageId) {
+        return storageId != null && ids.contains(storageId);
+    }
+
+    /**
+     * Records that a user has a config file.
+     *
+     * @param storageId the storage id of the user.
+     */
+    synchronized void add(String storageId) {
+        ids.add(storageId);
+    }
+
+    /**
+     * Finds the storage ids starting with a prefix.
+     *
+     * @param prefix the prefix.
+     * @param max    the maximum number of ids to return.
+     * @return the ids, sorted.
+     */
+    List<String> startingWith(String prefix, int max) {
+        List<String> result = new ArrayList<String>();
+        String from = prefix;
+        if (from == null) {
+            from = "";
+        }
+        for (String id : ids.tailSet(from, true)) {
+            if (result.size() >= max || !id.regionMatches(ignoreCase, 0, from, 0, from.length())) {
+                break;
+            }
+            result.add(id);
+        }
+        return result;
+    }
+
+    /**
+     * Adds users to the index when they are saved.
+     */
+    @Extension
+    public static class UserSaveListener extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof User && file != null) {
+                //The directory of the config file is named by the storage id.
+                get().add(file.getFile().getParentFile().getName());
+            }
+        }
+    }
+
+    /**
+     * Lists the users directory periodically.
+     */
+    @Extension
+    public static class Refresher extends PeriodicWork {
+        private static final long PERIOD_MINUTES = 10;
+
+        @Override
+        public long getRecurrencePeriod() {
+            return PERIOD_MINUTES * MIN;
+        }
+
+        @Override
+        protected void doRun() {
+            get().refresh();
+        }
+    }
+}
@@ -25,6 +25,8 @@
 package com.sonymobile.jenkins.plugins.teamview;
 
 import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.xml.QNameMap;
+import com.thoughtworks.xstream.io.xml.StaxReader;
 import hudson.Functions;
 import hudson.XmlFile;
 import hudson.model.MyViewsProperty;
@@ -33,23 +35,15 @@ import hudson.model.View;
 import hudson.security.AccessDeniedException2;
 import hudson.util.XStream2;
 import jenkins.model.Jenkins;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.StringWriter;
+import java.io.InputStream;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -72,6 +66,17 @@ public final class UserUtil {
         XSTREAM.alias("views", LinkedList.class);
     }
 
+    /**
+     * The factory used to read user configuration files, one per thread since the StAX spec doesn't promise that a
+     * factory can be shared. Looking up and configuring a new factory for every import is comparatively expensive.
+     */
+    private static final ThreadLocal<XMLInputFactory> INPUT_FACTORY = new ThreadLocal<XMLInputFactory>() {
+        @Override
+        protected XMLInputFactory initialValue() {
+            return createInputFactory();
+        }
+    };
+
     /**
      * Utility constructor.
      */
@@ -79,78 +84,176 @@ public final class UserUtil {
     }
 
     /**
-     * Reads the user from disk and returns the {@link MyViewsProperty} inside.
+     * Reads the user from disk and returns the views of the {@link MyViewsProperty} inside.
+     * The file is read in a single streaming pass that stops after the views, and the owner of each view is
+     * left out since it refers to the user's property.
      *
      * @param idOrFullName the user id.
-     * @return the views property.
+     * @return the views, an empty list if the property has no views or null if the user or property doesn't exist.
      *
-     * @throws IOException                  if so.
-     * @throws TransformerException         if something goes wrong in the XML to String transformation.
-     * @throws SAXException                 if something goes wrong in the initial parsing of the config file.
-     * @throws ParserConfigurationException if a DocumentBuilder cannot be created.
+     * @throws IOException if the file can't be read or parsed.
      */
-    public static List<View> unmarshalViews(String idOrFullName) throws IOException, ParserConfigurationException,
-                                                                        SAXException, TransformerException {
+    public static List<View> unmarshalViews(String idOrFullName) throws IOException {
         XmlFile xml = getConfigFile(idOrFullName);
-        if (xml.getFile().exists()) {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            Document doc = builder.parse(xml.getFile());
-            Element element = doc.getDocumentElement();
-            NodeList tags = element.getElementsByTagName("hudson.model.MyViewsProperty");
-            if (tags != null && tags.getLength() > 0) {
-                Element propElement = (Element)tags.item(0);
-                NodeList views = propElement.getElementsByTagName("views");
-                if (views != null && views.getLength() > 0) {
-                    Element viewNode = (Element)views.item(0);
-                    viewNode = cleanFirstLevelOwner(viewNode);
-                    StringWriter sw = new StringWriter();
-                    Transformer t = TransformerFactory.newInstance().newTransformer();
-                    t.transform(new DOMSource(viewNode), new StreamResult(sw));
-                    String viewsXmlString = sw.toString();
-                    return (List<View>)XSTREAM.fromXML(viewsXmlString);
-                } else {
+        if (xml == null || !xml.getFile().exists()) {
+            return null;
+        }
+        return unmarshalViews(xml.getFile(), getInputFactory());
+    }
+
+    /**
+     * Reads the views of the {@link MyViewsProperty} in a user configuration file.
+     *
+     * @param file    the file.
+     * @param factory the factory to create the reader with.
+     * @return the views, an empty list if the property has no views or null if there is no property.
+     *
+     * @throws IOException if the file can't be read or parsed.
+     * @see #unmarshalViews(String)
+     */
+    static List<View> unmarshalViews(File file, XMLInputFactory factory) throws IOException {
+        long started = TeamMetrics.USER_VIEWS_UNMARSHAL.start();
+        InputStream in = new FileInputStream(file);
+        try {
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            try {
+                if (!seekTo(reader, "hudson.model.MyViewsProperty", 0)) {
+                    return null;
+                }
+                if (!seekTo(reader, "views", 1)) {
                     return Collections.emptyList();
                 }
-            } else {
-                return null;
+                return (List<View>)XSTREAM.unmarshal(new StaxReader(new QNameMap(), new ViewsReader(reader)));
+            } finally {
+                reader.close();
             }
-        } else {
-            return null;
+        } catch (XMLStreamException e) {
+            IOException ioe = new IOException("Failed to read the views in " + file);
+            ioe.initCause(e);
+            throw ioe;
+        } finally {
+            in.close();
+            TeamMetrics.USER_VIEWS_UNMARSHAL.stop(started);
         }
     }
 
     /**
-     * Removes any nodes with the tag name "owner" from the first level of children.
+     * The factory for reading user configuration files on the current thread.
      *
-     * @param viewNode the node who's children to free of their owner
-     * @return the same element.
+     * @return the factory.
      */
-    private static Element cleanFirstLevelOwner(Element viewNode) {
-        NodeList childNodes = viewNode.getChildNodes();
-        for (int i = 0; i < childNodes.getLength(); i++) {
-            Node node = childNodes.item(i);
-            if (node instanceof Element) {
-                Element child = (Element)node;
-                NodeList owners = child.getElementsByTagName("owner");
-                for (int j = 0; j < owners.getLength(); j++) {
-                    Node o = owners.item(j);
-                    child.removeChild(o);
+    static XMLInputFactory getInputFactory() {
+        return INPUT_FACTORY.get();
+    }
+
+    /**
+     * Creates a factory for reading user configuration files, that doesn't process DTDs or external entities.
+     *
+     * @return the factory.
+     */
+    static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_VALIDATING, false);
+        return factory;
+    }
+
+    /**
+     * Moves the reader forward to the start of the next element with a name, as long as that element is within
+     * the element the reader is in.
+     *
+     * @param reader    the reader.
+     * @param localName the name of the element.
+     * @param depth     the number of elements the reader is in, 0 to search the rest of the document.
+     * @return true if the reader is at the start of the element, false if it wasn't found.
+     * @throws XMLStreamException if the document can't be parsed.
+     */
+    private static boolean seekTo(XMLStreamReader reader, String localName, int depth) throws XMLStreamException {
+        int level = depth;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamReader.START_ELEMENT) {
+                if (localName.equals(reader.getLocalName())) {
+                    return true;
+                }
+                level++;
+            } else if (event == XMLStreamReader.END_ELEMENT) {
+                level--;
+                if (level < depth) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the subtree of the views element the underlying reader is at, without the owner elements of the views.
+     * XStream's reader starts by moving to the next element, so the views element is replayed first.
+     */
+    private static final class ViewsReader extends StreamReaderDelegate {
+        private static final String OWNER = "owner";
+        private static final int VIEW_DEPTH = 2;
+        private boolean started = false;
+        private int depth = 0;
+
+        /**
+         * Constructor.
+         *
+         * @param reader the reader, positioned at the start of the views element.
+         */
+        private ViewsReader(XMLStreamReader reader) {
+            super(reader);
+        }
+
+        @Override
+        public int next() throws XMLStreamException {
+            int event;
+            if (!started) {
+                started = true;
+                event = getEventType();
+            } else {
+                event = super.next();
+                while (event == START_ELEMENT && depth == VIEW_DEPTH && OWNER.equals(getLocalName())) {
+                    skipElement();
+                    event = super.next();
+                }
+            }
+            if (event == START_ELEMENT) {
+                depth++;
+            } else if (event == END_ELEMENT) {
+                depth--;
+            }
+            return event;
+        }
+
+        /**
+         * Skips the element the reader is at, including everything in it.
+         *
+         * @throws XMLStreamException if the document can't be parsed.
+         */
+        private void skipElement() throws XMLStreamException {
+            int level = 1;
+            while (level > 0) {
+                int event = super.next();
+                if (event == START_ELEMENT) {
+                    level++;
+                } else if (event == END_ELEMENT) {
+                    level--;
                 }
             }
         }
-        return viewNode;
     }
 
     /**
-     * Checks if there is a config.xml file for the provided user id.
+     * Checks if there is a config.xml file for the provided user id. Answered from the {@link UserIndex}.
      *
      * @param idOrFullName the user name
      * @return true if so.
      */
     public static boolean userExists(String idOrFullName) {
-        File f = getConfigFileFor(idOrFullName);
-        return f != null && f.exists();
+        return UserIndex.get().contains(toStorageId(idOrFullName));
     }
 
     /**
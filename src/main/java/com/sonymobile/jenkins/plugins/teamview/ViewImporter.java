@@ -0,0 +1,334 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Sony Mobile Communications AB. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.teamview;
+
+import hudson.model.AllView;
+import hudson.model.Descriptor;
+import hudson.model.View;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Imports the personal views of a number of users into a team. The users' config files are read in parallel,
+ * see {@link PluginImpl#IMPORT_THREADS}, and the views are merged in the order the users were given, so the result
+ * doesn't depend on which file was read first. A view is skipped if the team, or a user earlier in the list,
+ * already has a view with the same name. All the views are added to the team with a single save.
+ *
+ * @author Robert Sandell &lt;robert.sandell@sonymobile.com&gt;
+ */
+final class ViewImporter {
+
+    private static final Logger logger = Logger.getLogger(ViewImporter.class.getName());
+    private static final Pattern USER_SEPARATOR = Pattern.compile("[,\\r\\n]+");
+
+    private final Team team;
+    private final List<String> userNames;
+    private final Map<String, IOException> failures = new LinkedHashMap<String, IOException>();
+    private final List<String> skippedViewNames = new ArrayList<String>();
+    private final AtomicInteger usersRead = new AtomicInteger();
+    private final AtomicInteger viewsRead = new AtomicInteger();
+    private volatile int importedCount = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param team      the team to import the views into.
+     * @param userNames the ids or full names of the users, in the order their views take precedence.
+     */
+    ViewImporter(Team team, Collection<String> userNames) {
+        this.team = team;
+        this.userNames = new ArrayList<String>(new LinkedHashSet<String>(userNames));
+    }
+
+    /**
+     * Creates an importer for the users submitted in a form.
+     *
+     * @param team      the team to import the views into.
+     * @param userNames the users, separated by commas or line breaks.
+     * @return the importer.
+     * @throws Descriptor.FormException if there are no users or a user doesn't exist.
+     */
+    static ViewImporter create(Team team, String userNames) throws Descriptor.FormException {
+        List<String> names = parseUserNames(userNames);
+        if (names.isEmpty()) {
+            throw new Descriptor.FormException("Please enter at least one user.", "userName");
+        }
+        for (String name : names) {
+            if (!UserUtil.userExists(name)) {
+                throw new Descriptor.FormException("User " + name + " does not exist.", "userName");
+            }
+        }
+        return new ViewImporter(team, names);
+    }
+
+    /**
+     * Splits a list of users separated by commas or line breaks.
+     *
+     * @param text the list.
+     * @return the user names, without blanks.
+     */
+    static List<String> parseUserNames(String text) {
+        List<String> names = new ArrayList<String>();
+        if (text == null) {
+            return names;
+        }
+        for (String name : USER_SEPARATOR.split(text)) {
+            String trimmed = name.trim();
+            if (trimmed.length() > 0) {
+                names.add(trimmed);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * The users to import from, without duplicates.
+     *
+     * @return the user names.
+     */
+    List<String> getUserNames() {
+        return userNames;
+    }
+
+    /**
+     * Checks that the current user may read the views of all the users. Must be called on the thread of the request
+     * that asked for the import, before {@link #importViews()}.
+     *
+     * @throws hudson.security.AccessDeniedException2 if not.
+     */
+    void checkPermissions() {
+        for (String userName : userNames) {
+            UserUtil.checkViewsReadPermission(userName);
+        }
+    }
+
+    /**
+     * Reads the views of all the users and adds them to the team. A user whose views can't be read is recorded
+     * in {@link #getFailures()} and the views of the other users are still imported.
+     * Interrupting the calling thread cancels the import, as long as the views haven't started to be added.
+     *
+     * @throws IOException if the team can't be saved, or if interrupted while reading.
+     */
+    void importViews() throws IOException {
+        long started = TeamMetrics.VIEW_IMPORT.start();
+        try {
+            importViewsNow();
+        } finally {
+            TeamMetrics.VIEW_IMPORT.stop(started);
+        }
+    }
+
+    /**
+     * Does the work of {@link #importViews()}.
+     *
+     * @throws IOException if the team can't be saved, or if interrupted while reading.
+     */
+    private void importViewsNow() throws IOException {
+        TeamViewsProperty property = team.getProperty(TeamViewsProperty.class);
+        if (property == null || userNames.isEmpty()) {
+            return;
+        }
+        List<List<View>> read;
+        TeamTrace.Span readSpan = TeamTrace.start("read users", String.valueOf(userNames.size()));
+        try {
+            read = readViews();
+        } finally {
+            readSpan.end();
+        }
+        Set<String> names = new HashSet<String>();
+        for (View view : property.getViews()) {
+            names.add(view.getViewName());
+        }
+        List<View> toAdd = new ArrayList<View>();
+        for (List<View> views : read) {
+            for (View view : views) {
+                if (view instanceof AllView) {
+                    continue;
+                }
+                if (names.add(view.getViewName())) {
+                    toAdd.add(view);
+                } else {
+                    synchronized (skippedViewNames) {
+                        skippedViewNames.add(view.getViewName());
+                    }
+                }
+            }
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedIOException("Import of views into " + team.getName() + " was cancelled");
+        }
+        TeamTrace.Span addSpan = TeamTrace.start("add views", String.valueOf(toAdd.size()));
+        try {
+            property.addViews(toAdd);
+        } finally {
+            addSpan.end();
+        }
+        importedCount = toAdd.size();
+    }
+
+    /**
+     * Reads the views of each user on the reader threads of the plugin. The tasks still queued or running are
+     * cancelled if the import fails or is interrupted.
+     *
+     * @return the views of each user that could be read, in the order of the users.
+     * @throws InterruptedIOException if interrupted while waiting for the users to be read.
+     */
+    private List<List<View>> readViews() throws InterruptedIOException {
+        ExecutorService executor = PluginImpl.getInstance().getReaderExecutor();
+        List<Future<List<View>>> futures = new ArrayList<Future<List<View>>>(userNames.size());
+        try {
+            for (final String userName : userNames) {
+                futures.add(executor.submit(new Callable<List<View>>() {
+                    @Override
+                    public List<View> call() throws IOException {
+                        try {
+                            List<View> views = UserUtil.unmarshalViews(userName);
+                            if (views != null) {
+                                viewsRead.addAndGet(views.size());
+                            }
+                            return views;
+                        } finally {
+                            usersRead.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            List<List<View>> result = new ArrayList<List<View>>(userNames.size());
+            for (int i = 0; i < futures.size(); i++) {
+                List<View> views = getViews(userNames.get(i), futures.get(i));
+                if (views != null) {
+                    result.add(views);
+                }
+            }
+            return result;
+        } finally {
+            for (Future<List<View>> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Waits for the views of one user, recording a failure if they couldn't be read.
+     *
+     * @param userName the user.
+     * @param future   the task reading the views.
+     * @return the views, or null on failure.
+     * @throws InterruptedIOException if interrupted while waiting.
+     */
+    private List<View> getViews(String userName, Future<List<View>> future) throws InterruptedIOException {
+        try {
+            List<View> views = future.get();
+            if (views == null) {
+                return Collections.emptyList();
+            }
+            return views;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while importing views into " + team.getName());
+        } catch (ExecutionException e) {
+            IOException failure;
+            if (e.getCause() instanceof IOException) {
+                failure = (IOException)e.getCause();
+            } else {
+                failure = new IOException("Failed to read the views of " + userName);
+                failure.initCause(e.getCause());
+            }
+            logger.log(Level.WARNING, "Failed to import the views of " + userName + " into " + team.getName(),
+                    failure);
+            synchronized (failures) {
+                failures.put(userName, failure);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The users whose views couldn't be read, in the order they were given.
+     *
+     * @return user name to the cause.
+     */
+    Map<String, IOException> getFailures() {
+        synchronized (failures) {
+            return new LinkedHashMap<String, IOException>(failures);
+        }
+    }
+
+    /**
+     * The names of the views that were skipped since the team already had a view with that name.
+     *
+     * @return the view names.
+     */
+    List<String> getSkippedViewNames() {
+        synchronized (skippedViewNames) {
+            return new ArrayList<String>(skippedViewNames);
+        }
+    }
+
+    /**
+     * The number of users whose config files have been read so far, including those that failed.
+     *
+     * @return the number of users.
+     */
+    int getUsersRead() {
+        return usersRead.get();
+    }
+
+    /**
+     * The number of views read from the users' config files so far.
+     *
+     * @return the number of views.
+     */
+    int getViewsRead() {
+        return viewsRead.get();
+    }
+
+    /**
+     * The number of views added to the team.
+     *
+     * @return the number of views.
+     */
+    int getImportedCount() {
+        return importedCount;
+    }
+}
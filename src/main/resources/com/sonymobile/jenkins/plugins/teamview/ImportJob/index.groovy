@@ -0,0 +1,82 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Sony Mobile Communications AB. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonymobile.jenkins.plugins.teamview.ImportJob
+
+def l =  namespace(lib.LayoutTagLib);
+def f =  namespace(lib.FormTagLib);
+def st = namespace("jelly:stapler")
+
+def progress = my.getProgress()
+l.layout(title: my.team.getName()) {
+    st.include(page: "sidepanel", it: my.team)
+    l.main_panel() {
+        h1(_("Import") + " " + my.displayName);
+        p {text(_("Users") + ": " + my.userNames.join(", "))}
+        table {
+            for (field in ["state", "usersProcessed", "viewsProcessed", "viewsImported", "duration"]) {
+                tr {
+                    td {text(field)}
+                    td(id: "import-" + field) {text(progress[field])}
+                }
+            }
+        }
+        h2(_("Failures"))
+        ul(id: "import-failures") {
+            for (failure in progress.failures) {
+                li {text(failure.user + ": " + failure.message)}
+            }
+        }
+        if (!my.finished) {
+            f.form(method: "POST", action: "cancel", name: "cancel") {
+                f.submit(value: _("Cancel"))
+            }
+            script {
+                raw("""
+                    (function poll() {
+                        new Ajax.Request("progress", {
+                            method: "get",
+                            onSuccess: function(rsp) {
+                                var p = rsp.responseText.evalJSON();
+                                ["state", "usersProcessed", "viewsProcessed", "viewsImported", "duration"].each(
+                                    function(field) { \$("import-" + field).innerHTML = p[field].toString().escapeHTML(); });
+                                var failures = \$("import-failures");
+                                failures.innerHTML = "";
+                                p.failures.each(function(failure) {
+                                    var li = document.createElement("li");
+                                    li.appendChild(document.createTextNode(failure.user + ": " + failure.message));
+                                    failures.appendChild(li);
+                                });
+                                if (p.state == "QUEUED" || p.state == "RUNNING") {
+                                    setTimeout(poll, 1000);
+                                } else {
+                                    window.location.reload();
+                                }
+                            }
+                        });
+                    })();
+                """)
+            }
+        }
+    }
+}
@@ -21,26 +21,36 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
  * THE SOFTWARE.
  */
-package com.sonymobile.jenkins.plugins.teamview.Team
 
-import hudson.model.User
+package com.sonymobile.jenkins.plugins.teamview.SlowOperationsLink
 
+def l = namespace(lib.LayoutTagLib);
 
-def l =  namespace(lib.LayoutTagLib);
-def f =  namespace(lib.FormTagLib);
-def st = namespace("jelly:stapler")
-
-l.layout(title: my.getName()) {
-    st.include(page:"sidepanel")
+l.layout(title: my.displayName, permission: app.ADMINISTER) {
     l.main_panel() {
-        h1(_("Import Views from User"));
-        f.form(method: "POST", action: "importViewsSubmit") {
-          f.entry(title: _("Username"), help: resURL + "/plugin/team-view/help/import-userName.html") {
-            f.editableComboBox(name: "userName", items: User.all.collect {return it.id})
-          }
-          f.block {
-            f.submit(value: _("Import"))
-          }
+        h1(my.displayName);
+        if (my.thresholdMillis < 0) {
+            p {text(_("The tracing is turned off."))}
+        } else {
+            p {text(_("Operations that took at least") + " " + my.thresholdMillis + " ms.")}
+        }
+        table(class: "pane sortable bigtable") {
+            tr {
+                th {text(_("Time"))}
+                th {text(_("Operation"))}
+                th {text(_("Duration"))}
+                th {text(_("Thread"))}
+                th {text(_("Breakdown"))}
+            }
+            for (operation in my.slowOperations) {
+                tr {
+                    td {text(operation.timestamp)}
+                    td {text(operation.name)}
+                    td {text(operation.millis + " ms")}
+                    td {text(operation.threadName)}
+                    td {pre {text(operation.breakdown)}}
+                }
+            }
         }
     }
 }
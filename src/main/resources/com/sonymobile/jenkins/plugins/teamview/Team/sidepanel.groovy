@@ -27,12 +27,12 @@ import com.sonymobile.jenkins.plugins.teamview.Messages
 def l = namespace(lib.LayoutTagLib);
 l.side_panel() {
   l.task(icon: "images/24x24/user.png",
-          href: "views",
+          href: rootURL + "/" + my.getUrl() + "views",
           title: Messages.Team_Views());
   l.task(icon: "images/24x24/setting.png",
-          href: "configure",
+          href: rootURL + "/" + my.getUrl() + "configure",
           title: Messages.Team_Configure());
   l.task(icon: "images/24x24/gear2.png",
-          href: "import",
+          href: rootURL + "/" + my.getUrl() + "import/",
           title: Messages.Team_ImportViews());
 }
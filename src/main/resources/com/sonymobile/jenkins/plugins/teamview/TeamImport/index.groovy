@@ -0,0 +1,63 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Sony Mobile Communications AB. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonymobile.jenkins.plugins.teamview.TeamImport
+
+def l =  namespace(lib.LayoutTagLib);
+def f =  namespace(lib.FormTagLib);
+def st = namespace("jelly:stapler")
+
+l.layout(title: my.team.getName()) {
+    st.include(page: "sidepanel", it: my.team)
+    l.main_panel() {
+        h1(_("Import Views from Users"));
+        f.form(method: "POST", action: "submit") {
+          f.entry(title: _("Usernames"), help: resURL + "/plugin/team-view/help/import-userName.html") {
+            f.textbox(name: "userName", value: "", autoCompleteUrl: "../autoCompleteUserName",
+                    autoCompleteDelimChar: ",",
+                    checkUrl: "'../checkUserName?userName='+encodeURIComponent(this.value)")
+          }
+          f.block {
+            f.submit(value: _("Import"))
+          }
+        }
+        def jobs = my.getJobs()
+        if (!jobs.isEmpty()) {
+            h2(_("Recent imports"))
+            table(class: "pane sortable") {
+                tr {
+                    th(class: "pane-header") {text(_("Import"))}
+                    th(class: "pane-header") {text(_("Users"))}
+                    th(class: "pane-header") {text(_("State"))}
+                }
+                for (job in jobs) {
+                    tr {
+                        td(class: "pane") {a(href: "job/" + job.id + "/") {text(job.displayName)}}
+                        td(class: "pane") {text(job.userNames.join(", "))}
+                        td(class: "pane") {text(job.state.name())}
+                    }
+                }
+            }
+        }
+    }
+}
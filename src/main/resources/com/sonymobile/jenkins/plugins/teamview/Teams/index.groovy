@@ -23,11 +23,19 @@
  */
 package com.sonymobile.jenkins.plugins.teamview.Teams
 
-import com.sonymobile.jenkins.plugins.teamview.PluginImpl
 import com.sonymobile.jenkins.plugins.teamview.Messages
 
 def l = namespace(lib.LayoutTagLib);
-def teams = PluginImpl.getInstance().getTeams();
+def f = namespace(lib.FormTagLib);
+def query = request.getParameter("q") ?: "";
+def teams = my.findTeams(query);
+def pageSize = my.getPageSize();
+def pageCount = Math.max(1, (int)Math.ceil(teams.size() / (double)pageSize));
+def page = 1;
+if (request.getParameter("page")?.isInteger()) {
+    page = Math.min(Math.max(1, request.getParameter("page").toInteger()), pageCount);
+}
+def pageUrl = { n -> "?q=" + URLEncoder.encode(query, "UTF-8") + "&page=" + n };
 l.layout(title: _("Teams")) {
     l.side_panel() {
         l.task(icon: "images/24x24/new-package.png",
@@ -37,13 +45,37 @@ l.layout(title: _("Teams")) {
 
     l.main_panel() {
         h1(_("Teams"));
+        if (my.loading) {
+            div(class: "warning") {text(_("The teams are still being loaded, some of them may be missing."))}
+        }
+        f.form(action: ".", method: "GET", name: "filter") {
+            f.entry(title: _("Filter")) {
+                f.textbox(name: "q", value: query, autoCompleteUrl: "autoCompleteQuery")
+            }
+            f.block {
+                f.submit(value: _("Filter"))
+            }
+        }
         ul{
-            for (team in teams.values()) {
+            for (team in teams.subList((page - 1) * pageSize, Math.min(page * pageSize, teams.size()))) {
                 li{
-                    a(href: team.getName(),
+                    a(href: team.getSearchUrl(),
                     alt: _(team.getName())) {text(_(team.getName()))}
                 }
             }
         }
+        if (pageCount > 1) {
+            div {
+                if (page > 1) {
+                    a(href: pageUrl(page - 1)) {text(_("Previous"))}
+                    text(" ")
+                }
+                text(_("Page") + " " + page + " / " + pageCount)
+                if (page < pageCount) {
+                    text(" ")
+                    a(href: pageUrl(page + 1)) {text(_("Next"))}
+                }
+            }
+        }
     }
 }
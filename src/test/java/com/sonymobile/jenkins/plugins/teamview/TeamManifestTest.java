@@ -0,0 +1,81 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Sony Mobile Communications AB. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.teamview;
+
+import org.apache.commons.io.FileUtils;
+import org.jvnet.hudson.test.HudsonTestCase;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hudson Test cases for {@link TeamManifest}.
+ *
+ * @author Robert Sandell &lt;robert.sandell@sonymobile.com&gt;
+ */
+public class TeamManifestTest extends HudsonTestCase {
+
+    /**
+     * Tests that created and renamed teams are in the manifest read at the next startup,
+     * and that a team whose directory is gone is left out instead of being loaded empty.
+     *
+     * @throws Exception if so
+     */
+    public void testNamesAfterRestart() throws Exception {
+        TeamRegistry registry = PluginImpl.getInstance().getRegistry();
+        registry.create("a", "").save();
+        registry.create("b", "").save();
+        Team c = registry.create("c", "");
+        c.save();
+        assertTrue(registry.rename(c, "d"));
+        FileUtils.deleteDirectory(new File(Team.getRootDir(), "b"));
+
+        TeamManifest manifest = TeamManifest.load();
+        assertEquals(Arrays.asList("a", "d"), Arrays.asList(manifest.getTeamNames()));
+        //The removal is written, so b isn't looked for again.
+        assertEquals(Arrays.asList("a", "d"), Arrays.asList(TeamManifest.load().getTeamNames()));
+    }
+
+    /**
+     * Tests that a team directory restored outside of Jenkins is picked up, also when it is restored long after
+     * the manifest was written.
+     *
+     * @throws Exception if so
+     */
+    public void testTeamAddedOutsideJenkins() throws Exception {
+        TeamRegistry registry = PluginImpl.getInstance().getRegistry();
+        registry.create("a", "").save();
+        File root = Team.getRootDir();
+        //As if the manifest had been written a while ago.
+        assertTrue(root.setLastModified(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+        TeamManifest.get().rescan();
+        assertEquals(Arrays.asList("a"), Arrays.asList(TeamManifest.load().getTeamNames()));
+
+        File config = new File(new File(root, "a"), Team.CONFIG_FILE_NAME);
+        FileUtils.copyFile(config, new File(new File(root, "b"), Team.CONFIG_FILE_NAME));
+        assertEquals(Arrays.asList("a", "b"), Arrays.asList(TeamManifest.load().getTeamNames()));
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Sony Mobile Communications AB. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.teamview;
+
+import jenkins.model.Jenkins;
+import org.jvnet.hudson.test.HudsonTestCase;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Hudson Test cases for {@link TeamRegistry}.
+ *
+ * @author Robert Sandell &lt;robert.sandell@sonymobile.com&gt;
+ */
+public class TeamRegistryTest extends HudsonTestCase {
+
+    private static final int THREADS = 8;
+    private static final int TEAMS = 20;
+    private static final int SHARED_NAMES = 5;
+
+    /**
+     * Tests that many threads creating the same teams and then renaming them to the same names
+     * end up with each name used exactly once, both in the registry and on disk.
+     *
+     * @throws Exception if so
+     */
+    public void testConcurrentCreateAndRename() throws Exception {
+        final TeamRegistry registry = PluginImpl.getInstance().getRegistry();
+        final CyclicBarrier barrier = new CyclicBarrier(THREADS);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            results.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    List<Team> created = new ArrayList<Team>();
+                    barrier.await();
+                    for (int i = 0; i < TEAMS; i++) {
+                        Team team = registry.create("team-" + i, "");
+                        if (team != null) {
+                            team.save();
+                            created.add(team);
+                        }
+                    }
+                    barrier.await();
+                    for (int i = 0; i < created.size(); i++) {
+                        Team team = created.get(i);
+                        if (!registry.rename(team, "shared-" + (i % SHARED_NAMES))) {
+                            assertTrue(registry.rename(team, "renamed-" + thread + "-" + i));
+                        }
+                    }
+                    return created.size();
+                }
+            }));
+        }
+        int created = 0;
+        for (Future<Integer> result : results) {
+            created += result.get();
+        }
+        executor.shutdown();
+
+        assertEquals(TEAMS, created);
+        assertEquals(TEAMS, registry.size());
+        assertEquals(TEAMS, registry.getSnapshot().getTeams().size());
+        File teamsDir = new File(Jenkins.getInstance().getRootDir(), "teams");
+        for (Map.Entry<String, Team> entry : registry.asMap().entrySet()) {
+            assertEquals(entry.getKey(), entry.getValue().getName());
+            assertTrue(new File(new File(teamsDir, entry.getKey()), "config.xml").isFile());
+        }
+        for (int i = 0; i < SHARED_NAMES; i++) {
+            assertNotNull(registry.get("shared-" + i));
+        }
+        assertEquals(registry.asMap().keySet(), new HashSet<String>(Arrays.asList(Team.getTeamNames())));
+        //As read at the next startup.
+        String[] names = TeamManifest.load().getTeamNames();
+        assertEquals(registry.asMap().keySet(), new HashSet<String>(Arrays.asList(names)));
+        assertEquals(TEAMS, teamsDir.list().length);
+    }
+}
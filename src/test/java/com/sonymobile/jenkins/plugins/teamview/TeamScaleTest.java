@@ -0,0 +1,179 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Sony Mobile Communications AB. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.teamview;
+
+import org.jvnet.hudson.test.HudsonTestCase;
+
+import java.util.logging.Logger;
+
+/**
+ * Scale tests with many teams and views. Measures how long it takes to load the teams in the background,
+ * how much heap the loaded teams retain and how long the team pages take to render, and fails if any of them is
+ * over its threshold.
+ * They take a while, so they only run with the scale-tests profile: <code>mvn test -Pscale-tests</code>.
+ * The sizes and thresholds are read from system properties prefixed with the name of this class, for example
+ * <code>-Dcom.sonymobile.jenkins.plugins.teamview.TeamScaleTest.teams=10000</code>.
+ *
+ * @author Robert Sandell &lt;robert.sandell@sonymobile.com&gt;
+ */
+public class TeamScaleTest extends HudsonTestCase {
+
+    private static final Logger logger = Logger.getLogger(TeamScaleTest.class.getName());
+    private static final String PREFIX = TeamScaleTest.class.getName();
+
+    /**
+     * The number of teams to populate.
+     */
+    private static final int TEAMS = Integer.getInteger(PREFIX + ".teams", 1000);
+
+    /**
+     * The number of views in each team, besides the default view.
+     */
+    private static final int VIEWS = Integer.getInteger(PREFIX + ".views", 20);
+
+    /**
+     * The longest loading the teams in the background may take, in milliseconds.
+     */
+    private static final long MAX_LOAD_MILLIS = Long.getLong(PREFIX + ".maxLoadMillis", 30000);
+
+    /**
+     * The most heap the loaded teams may retain, in bytes per team.
+     */
+    private static final long MAX_HEAP_PER_TEAM = Long.getLong(PREFIX + ".maxHeapPerTeam", 256 * 1024);
+
+    /**
+     * The longest a page may take to render on average, in milliseconds.
+     */
+    private static final long MAX_RENDER_MILLIS = Long.getLong(PREFIX + ".maxRenderMillis", 2000);
+
+    /**
+     * The number of times each page is rendered after the first, warming up, time.
+     */
+    private static final int RENDERS = Integer.getInteger(PREFIX + ".renders", 10);
+
+    private static final int GC_ROUNDS = 5;
+    private static final long GC_PAUSE_MILLIS = 100;
+    private static final long POLL_MILLIS = 10;
+
+    /**
+     * Tests the time it takes to load all the teams in the background at startup, until the registry is ready,
+     * and the heap the loaded teams retain.
+     *
+     * @throws Exception if so
+     */
+    public void testStartup() throws Exception {
+        TeamsGenerator.generate(TEAMS, VIEWS);
+        PluginImpl plugin = PluginImpl.getInstance();
+        TeamRegistry registry = plugin.getRegistry();
+        plugin.stop();
+        registry.clear();
+        plugin.start();
+
+        long started = System.currentTimeMillis();
+        PluginImpl.startLoadingTeams();
+        while (!registry.isReady() && System.currentTimeMillis() - started <= MAX_LOAD_MILLIS) {
+            Thread.sleep(POLL_MILLIS);
+        }
+        long loadMillis = System.currentTimeMillis() - started;
+        assertTrue("Loading took more than " + loadMillis + " ms", registry.isReady());
+        assertEquals(TEAMS, registry.size());
+
+        long loaded = usedHeap();
+        registry.clear();
+        long retained = loaded - usedHeap();
+        logger.info("Loaded " + TEAMS + " teams of " + VIEWS + " views in " + loadMillis + " ms, retaining "
+                + retained + " bytes");
+        assertTrue("The teams retain " + retained + " bytes", retained <= MAX_HEAP_PER_TEAM * TEAMS);
+    }
+
+    /**
+     * Tests the time it takes to render the list of teams, the views of a team and the context menus.
+     *
+     * @throws Exception if so
+     */
+    public void testRendering() throws Exception {
+        TeamsGenerator.generate(TEAMS, VIEWS);
+        PluginImpl plugin = PluginImpl.getInstance();
+        plugin.stop();
+        plugin.start();
+        plugin.loadRegistry();
+        String team = TeamsGenerator.teamName(TEAMS / 2);
+
+        assertRenderTime("teams/", null);
+        assertRenderTime("teams/" + team + "/views/", null);
+        assertRenderTime("teams/contextMenu", "application/json");
+        assertRenderTime("teams/" + team + "/contextMenu", "application/json");
+    }
+
+    /**
+     * Renders a page once to warm up, then {@link #RENDERS} more times, and checks the average time.
+     *
+     * @param url         the url relative to Jenkins.
+     * @param contentType the expected content type, or null for a html page.
+     * @throws Exception if the page can't be rendered.
+     */
+    private void assertRenderTime(String url, String contentType) throws Exception {
+        WebClient wc = createWebClient();
+        render(wc, url, contentType);
+        long started = System.currentTimeMillis();
+        for (int i = 0; i < RENDERS; i++) {
+            render(wc, url, contentType);
+        }
+        long average = (System.currentTimeMillis() - started) / RENDERS;
+        logger.info("Rendered " + url + " in " + average + " ms");
+        assertTrue("Rendering " + url + " took " + average + " ms", average <= MAX_RENDER_MILLIS);
+    }
+
+    /**
+     * Renders a page.
+     *
+     * @param wc          the client.
+     * @param url         the url relative to Jenkins.
+     * @param contentType the expected content type, or null for a html page.
+     * @throws Exception if the page can't be rendered.
+     */
+    private void render(WebClient wc, String url, String contentType) throws Exception {
+        if (contentType == null) {
+            wc.goTo(url);
+        } else {
+            wc.goTo(url, contentType);
+        }
+    }
+
+    /**
+     * The heap in use after a few rounds of garbage collection.
+     *
+     * @return the number of bytes.
+     * @throws InterruptedException if interrupted between the rounds.
+     */
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < GC_ROUNDS; i++) {
+            System.gc();
+            Thread.sleep(GC_PAUSE_MILLIS);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
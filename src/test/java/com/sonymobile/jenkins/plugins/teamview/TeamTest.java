@@ -24,17 +24,26 @@
 
 package com.sonymobile.jenkins.plugins.teamview;
 
+import hudson.XmlFile;
 import hudson.model.FreeStyleProject;
 import hudson.model.ListView;
 import hudson.model.MyViewsProperty;
+import hudson.model.Saveable;
 import hudson.model.User;
 import hudson.model.View;
+import hudson.model.listeners.SaveableListener;
+import hudson.util.FormValidation;
+import org.apache.commons.io.FileUtils;
 import org.jvnet.hudson.test.HudsonTestCase;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 import org.mockito.Matchers;
 
+import java.io.File;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -94,4 +103,82 @@ public class TeamTest extends HudsonTestCase {
         assertTrue(found1);
         assertTrue(found2);
     }
+
+    /**
+     * Tests the validation of the user names to import views from.
+     *
+     * @throws Exception if so
+     */
+    public void testDoCheckUserName() throws Exception {
+        User.get("alice", true).save();
+        User.get("bob", true).save();
+        Team team = new Team("Team1", "Description");
+        assertEquals(FormValidation.Kind.OK, team.doCheckUserName("alice, bob").kind);
+        assertEquals(FormValidation.Kind.ERROR, team.doCheckUserName("alice, carol").kind);
+        assertEquals(FormValidation.Kind.ERROR, team.doCheckUserName("").kind);
+        assertEquals(FormValidation.Kind.ERROR, team.doCheckUserName(" , ").kind);
+    }
+
+    /**
+     * Tests that a stub loads its configuration the first time its properties are used,
+     * as teams are registered with {@link PluginImpl#LAZY_LOAD}.
+     *
+     * @throws Exception if so
+     */
+    public void testStubLoadsOnPropertyAccess() throws Exception {
+        Team team = new Team("Team1", "Description");
+        team.getProperty(TeamViewsProperty.class).addViews(Collections.singletonList(new ListView("view1")));
+        team.save();
+
+        Team stub = Team.createStub("Team1");
+        assertFalse(stub.isLoaded());
+        TeamViewsProperty views = stub.getProperty(TeamViewsProperty.class);
+        assertTrue(stub.isLoaded());
+        assertNotNull(views);
+        assertNotNull(views.getView("view1"));
+        assertEquals("Description", stub.getDescription());
+
+        Team other = Team.createStub("Team1");
+        Object dynamic = other.getDynamic("views", null, null);
+        assertTrue(other.isLoaded());
+        assertSame(other.getProperty(TeamViewsProperty.class), dynamic);
+    }
+
+    /**
+     * Tests that saving a team that hasn't changed neither writes the file nor notifies the listeners,
+     * and that saving after a change does both.
+     *
+     * @throws Exception if so
+     */
+    public void testUnchangedSaveIsSkipped() throws Exception {
+        final Team team = new Team("Team1", "Description");
+        team.save();
+        File config = new File(new File(Team.getRootDir(), "Team1"), Team.CONFIG_FILE_NAME);
+        final List<Saveable> notified = new CopyOnWriteArrayList<Saveable>();
+        SaveableListener listener = new SaveableListener() {
+            @Override
+            public void onChange(Saveable o, XmlFile file) {
+                if (o == team) {
+                    notified.add(o);
+                }
+            }
+        };
+        SaveableListener.all().add(listener);
+        try {
+            long skipped = Team.getSkippedWriteCount();
+            String before = FileUtils.readFileToString(config, "UTF-8");
+            team.save();
+            assertEquals(skipped + 1, Team.getSkippedWriteCount());
+            assertTrue(notified.isEmpty());
+            assertEquals(before, FileUtils.readFileToString(config, "UTF-8"));
+
+            team.getProperty(TeamViewsProperty.class).setPrimaryViewName("changed");
+            team.save();
+            assertEquals(skipped + 1, Team.getSkippedWriteCount());
+            assertEquals(1, notified.size());
+            assertTrue(FileUtils.readFileToString(config, "UTF-8").contains("changed"));
+        } finally {
+            SaveableListener.all().remove(listener);
+        }
+    }
 }
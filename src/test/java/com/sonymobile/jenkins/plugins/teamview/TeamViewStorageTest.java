@@ -0,0 +1,148 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Sony Mobile Communications AB. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.teamview;
+
+import hudson.model.ListView;
+import org.apache.commons.io.FileUtils;
+import org.jvnet.hudson.test.HudsonTestCase;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Hudson Test cases for {@link TeamViewStorage}.
+ *
+ * @author Robert Sandell &lt;robert.sandell@sonymobile.com&gt;
+ */
+public class TeamViewStorageTest extends HudsonTestCase {
+
+    private static final String TEAM_NAME = "Team1";
+
+    @Override
+    protected void tearDown() throws Exception {
+        TeamViewStorage.setEnabled(PluginImpl.PER_VIEW_STORAGE);
+        super.tearDown();
+    }
+
+    /**
+     * Tests migrating a team from views in config.xml to one file per view and back. The order of the views
+     * must be kept, and views whose names only differ in case must get a file each.
+     *
+     * @throws Exception if so
+     */
+    public void testMigrationBothWays() throws Exception {
+        TeamViewStorage.setEnabled(false);
+        Team team = new Team(TEAM_NAME, "");
+        TeamViewsProperty property = team.getProperty(TeamViewsProperty.class);
+        property.addViews(Arrays.asList(new ListView("c"), new ListView("B"), new ListView("a"), new ListView("b")));
+        team.save();
+        List<String> expected = viewNames(team);
+        assertEquals(Arrays.asList("Default", "c", "B", "a", "b"), expected);
+        File viewsDir = TeamViewStorage.getViewsDir(team);
+
+        TeamViewStorage.setEnabled(true);
+        assertEquals(expected, viewNames(new Team(TEAM_NAME, null)));
+        String[] files = viewsDir.list();
+        assertEquals(expected.size(), files.length);
+        Set<String> ignoringCase = new HashSet<String>();
+        for (String file : files) {
+            ignoringCase.add(file.toLowerCase(Locale.ENGLISH));
+        }
+        assertEquals(expected.size(), ignoringCase.size());
+        assertFalse(readConfig().contains("hudson.model.ListView"));
+        //Read back from the view files.
+        assertEquals(expected, viewNames(new Team(TEAM_NAME, null)));
+
+        TeamViewStorage.setEnabled(false);
+        assertEquals(expected, viewNames(new Team(TEAM_NAME, null)));
+        assertFalse(viewsDir.exists());
+        assertTrue(readConfig().contains("hudson.model.ListView"));
+        assertEquals(expected, viewNames(new Team(TEAM_NAME, null)));
+    }
+
+    /**
+     * Tests that view files that can't be read are kept when the other files are cleaned up, both when files
+     * under an old name are replaced and when going back to views in config.xml.
+     *
+     * @throws Exception if so
+     */
+    public void testUnreadableViewFilesAreKept() throws Exception {
+        TeamViewStorage.setEnabled(true);
+        Team team = new Team(TEAM_NAME, "");
+        team.getProperty(TeamViewsProperty.class).addViews(Arrays.asList(new ListView("a"), new ListView("b")));
+        team.save();
+        File viewsDir = TeamViewStorage.getViewsDir(team);
+        File current = new File(viewsDir, TeamViewStorage.fileNameOf("a"));
+        File old = new File(viewsDir, "old-a.xml");
+        assertTrue(current.renameTo(old));
+        File unknown = new File(viewsDir, "unknown.xml");
+        FileUtils.writeStringToFile(unknown, "<com.example.NoSuchView><name>c</name></com.example.NoSuchView>");
+
+        assertEquals(Arrays.asList("Default", "a", "b"), viewNames(new Team(TEAM_NAME, null)));
+        assertTrue(current.exists());
+        assertFalse(old.exists());
+        assertTrue(unknown.exists());
+
+        TeamViewStorage.setEnabled(false);
+        assertEquals(Arrays.asList("Default", "a", "b"), viewNames(new Team(TEAM_NAME, null)));
+        assertTrue(readConfig().contains("hudson.model.ListView"));
+        assertEquals(Arrays.asList(unknown.getName()), Arrays.asList(viewsDir.list()));
+    }
+
+    /**
+     * Tests that the file names of views that only differ in case don't differ only in case.
+     */
+    public void testFileNamesIgnoringCase() {
+        String upper = TeamViewStorage.fileNameOf("View_A");
+        String lower = TeamViewStorage.fileNameOf("view_a");
+        assertFalse(upper.equalsIgnoreCase(lower));
+        assertFalse(TeamViewStorage.fileNameOf("_a").equals(TeamViewStorage.fileNameOf("A")));
+    }
+
+    /**
+     * The names of the views of a team, in order.
+     *
+     * @param team the team.
+     * @return the names.
+     */
+    private static List<String> viewNames(Team team) {
+        return team.getProperty(TeamViewsProperty.class).getViewNames();
+    }
+
+    /**
+     * Reads the config file of the team.
+     *
+     * @return the content.
+     * @throws Exception if so.
+     */
+    private static String readConfig() throws Exception {
+        return FileUtils.readFileToString(new File(new File(Team.getRootDir(), TEAM_NAME), Team.CONFIG_FILE_NAME),
+                "UTF-8");
+    }
+}
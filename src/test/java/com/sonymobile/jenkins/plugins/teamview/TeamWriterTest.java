@@ -0,0 +1,102 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Sony Mobile Communications AB. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.teamview;
+
+import org.apache.commons.io.FileUtils;
+import org.jvnet.hudson.test.HudsonTestCase;
+
+import java.io.File;
+
+/**
+ * Hudson Test cases for {@link TeamWriter}.
+ *
+ * @author Robert Sandell &lt;robert.sandell@sonymobile.com&gt;
+ */
+public class TeamWriterTest extends HudsonTestCase {
+
+    private static final int SAVES = 5;
+    private static final long SHORT_DELAY = 500;
+    private static final long LONG_DELAY = 60000;
+    private static final long TIMEOUT = 10000;
+    private static final long POLL = 50;
+
+    /**
+     * Tests that several saves within the delay are written once, with the last change.
+     *
+     * @throws Exception if so
+     */
+    public void testSavesWithinDelayCollapse() throws Exception {
+        Team team = new Team("Team1", "");
+        TeamWriter writer = new TeamWriter(SHORT_DELAY);
+        long before = TeamMetrics.TEAM_SAVE.getCount();
+        try {
+            for (int i = 0; i < SAVES; i++) {
+                team.getProperty(TeamViewsProperty.class).setPrimaryViewName("view" + i);
+                assertTrue(writer.schedule(team));
+            }
+            long deadline = System.currentTimeMillis() + TIMEOUT;
+            while (TeamMetrics.TEAM_SAVE.getCount() == before && System.currentTimeMillis() < deadline) {
+                Thread.sleep(POLL);
+            }
+            //Give a second write the chance to happen.
+            Thread.sleep(SHORT_DELAY * 2);
+            assertEquals(1, TeamMetrics.TEAM_SAVE.getCount() - before);
+            assertTrue(readConfig(team).contains("view" + (SAVES - 1)));
+        } finally {
+            writer.shutdown();
+        }
+    }
+
+    /**
+     * Tests that shutting down writes the teams that are waiting, and that saves are refused after that.
+     *
+     * @throws Exception if so
+     */
+    public void testShutdownFlushes() throws Exception {
+        Team team = new Team("Team1", "");
+        TeamWriter writer = new TeamWriter(LONG_DELAY);
+        long before = TeamMetrics.TEAM_SAVE.getCount();
+        team.getProperty(TeamViewsProperty.class).setPrimaryViewName("flushed");
+        assertTrue(writer.schedule(team));
+        assertEquals(0, TeamMetrics.TEAM_SAVE.getCount() - before);
+
+        writer.shutdown();
+        assertEquals(1, TeamMetrics.TEAM_SAVE.getCount() - before);
+        assertTrue(readConfig(team).contains("flushed"));
+        assertFalse(writer.schedule(team));
+    }
+
+    /**
+     * Reads the config file of a team.
+     *
+     * @param team the team.
+     * @return the content.
+     * @throws Exception if so.
+     */
+    private static String readConfig(Team team) throws Exception {
+        File dir = new File(Team.getRootDir(), team.getName());
+        return FileUtils.readFileToString(new File(dir, Team.CONFIG_FILE_NAME), "UTF-8");
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Sony Mobile Communications AB. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.teamview;
+
+import hudson.Util;
+import hudson.model.ListView;
+import hudson.model.View;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates synthetic teams in the <code>teams</code> directory of the running Jenkins. One team with the wanted
+ * number of views is created and saved through the plugin, and its config file is then copied for every team with
+ * only the name changed, which is a lot faster than saving each team. Shared by the scale tests and, through the
+ * test jar, the benchmarks.
+ *
+ * @author Robert Sandell &lt;robert.sandell@sonymobile.com&gt;
+ */
+public final class TeamsGenerator {
+
+    private static final String TEMPLATE_NAME = "template";
+
+    /**
+     * Utility constructor.
+     */
+    private TeamsGenerator() {
+    }
+
+    /**
+     * The name of a generated team.
+     *
+     * @param index the index of the team.
+     * @return the name.
+     */
+    public static String teamName(int index) {
+        return "team" + index;
+    }
+
+    /**
+     * The name of a generated view.
+     *
+     * @param index the index of the view.
+     * @return the name.
+     */
+    public static String viewName(int index) {
+        return "view" + index;
+    }
+
+    /**
+     * Writes the config files of a number of teams, named by {@link #teamName(int)}.
+     *
+     * @param teamCount the number of teams.
+     * @param viewCount the number of views in each team, besides the default view.
+     * @throws IOException if a file can't be written.
+     */
+    public static void generate(int teamCount, int viewCount) throws IOException {
+        String xml = templateXml(viewCount);
+        String nameElement = "<name>" + TEMPLATE_NAME + "</name>";
+        for (int i = 0; i < teamCount; i++) {
+            File dir = new File(Team.getRootDir(), teamName(i));
+            if (!dir.mkdirs()) {
+                throw new IOException("Failed to create " + dir);
+            }
+            String teamXml = xml.replace(nameElement, "<name>" + teamName(i) + "</name>");
+            FileUtils.writeStringToFile(new File(dir, Team.CONFIG_FILE_NAME), teamXml, "UTF-8");
+        }
+        //The config files were written behind the plugin's back.
+        TeamManifest.get().rescan();
+    }
+
+    /**
+     * Creates and saves a team with a number of views, and returns its config file.
+     *
+     * @param viewCount the number of views.
+     * @return the content of the config file.
+     * @throws IOException if the team can't be saved.
+     */
+    private static String templateXml(int viewCount) throws IOException {
+        Team team = new Team(TEMPLATE_NAME, "A generated team");
+        List<View> views = new ArrayList<View>(viewCount);
+        for (int i = 0; i < viewCount; i++) {
+            views.add(new ListView(viewName(i)));
+        }
+        team.getProperty(TeamViewsProperty.class).addViews(views);
+        team.save();
+        File dir = new File(Team.getRootDir(), TEMPLATE_NAME);
+        String xml = FileUtils.readFileToString(new File(dir, Team.CONFIG_FILE_NAME), "UTF-8");
+        Util.deleteRecursive(dir);
+        return xml;
+    }
+}
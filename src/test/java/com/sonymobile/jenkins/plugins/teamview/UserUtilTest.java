@@ -0,0 +1,229 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Sony Mobile Communications AB. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.sonymobile.jenkins.plugins.teamview;
+
+import com.thoughtworks.xstream.XStream;
+import hudson.model.AllView;
+import hudson.model.ListView;
+import hudson.model.MyViewsProperty;
+import hudson.model.User;
+import hudson.model.View;
+import hudson.util.XStream2;
+import jenkins.model.Jenkins;
+import org.apache.commons.io.FileUtils;
+import org.jvnet.hudson.test.HudsonTestCase;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.File;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Hudson Test cases for {@link UserUtil#unmarshalViews(String)}, compared with the DOM based reading it replaced.
+ *
+ * @author Robert Sandell &lt;robert.sandell@sonymobile.com&gt;
+ */
+public class UserUtilTest extends HudsonTestCase {
+
+    private static final String HEADER = "<?xml version='1.0' encoding='UTF-8'?>\n";
+    private static final String LIST_VIEW = "<hudson.model.ListView>\n"
+            + "  <owner class=\"hudson.model.MyViewsProperty\" reference=\"../../..\"/>\n"
+            + "  <name>list</name>\n"
+            + "  <filterExecutors>false</filterExecutors>\n"
+            + "  <filterQueue>false</filterQueue>\n"
+            + "  <jobNames>\n"
+            + "    <comparator class=\"hudson.util.CaseInsensitiveComparator\"/>\n"
+            + "    <string>job</string>\n"
+            + "  </jobNames>\n"
+            + "</hudson.model.ListView>\n";
+
+    /**
+     * The XStream the DOM based reading used, configured as in {@link UserUtil}.
+     */
+    private static final XStream LEGACY_XSTREAM = new XStream2();
+
+    static {
+        LEGACY_XSTREAM.alias("user", User.class);
+        LEGACY_XSTREAM.alias("views", LinkedList.class);
+    }
+
+    /**
+     * Tests the views of a user saved by Jenkins.
+     *
+     * @throws Exception if so
+     */
+    public void testSavedUser() throws Exception {
+        createFreeStyleProject("job");
+        User user = User.get("bob", true);
+        MyViewsProperty property = user.getProperty(MyViewsProperty.class);
+        ListView view = new ListView("list");
+        view.add(Jenkins.getInstance().getItem("job"));
+        property.addView(view);
+        property.addView(new ListView("other"));
+        user.save();
+        File config = UserUtil.getConfigFileFor("bob");
+
+        List<View> views = UserUtil.unmarshalViews("bob");
+        assertEquals(3, views.size());
+        assertSameViews(unmarshalWithDom(config), views);
+        for (View v : views) {
+            assertNull(v.getOwner());
+        }
+    }
+
+    /**
+     * Tests that a view owner with elements of its own, even another owner, is skipped as a whole.
+     *
+     * @throws Exception if so
+     */
+    public void testNestedOwners() throws Exception {
+        File config = write(HEADER + "<user>\n"
+                + "<properties>\n"
+                + "<hudson.model.MyViewsProperty>\n"
+                + "<views>\n"
+                + "<hudson.model.AllView>\n"
+                + "  <owner class=\"hudson.model.MyViewsProperty\">\n"
+                + "    <owner class=\"hudson.model.User\"><fullName>nested</fullName></owner>\n"
+                + "    <views><hudson.model.AllView><name>inner</name></hudson.model.AllView></views>\n"
+                + "  </owner>\n"
+                + "  <name>all</name>\n"
+                + "</hudson.model.AllView>\n"
+                + LIST_VIEW
+                + "</views>\n"
+                + "</hudson.model.MyViewsProperty>\n"
+                + "</properties>\n"
+                + "</user>\n");
+
+        List<View> views = UserUtil.unmarshalViews(config, UserUtil.createInputFactory());
+        assertEquals(2, views.size());
+        assertTrue(views.get(0) instanceof AllView);
+        assertEquals("all", views.get(0).getViewName());
+        assertTrue(views.get(1) instanceof ListView);
+        assertEquals("list", views.get(1).getViewName());
+        assertTrue(LEGACY_XSTREAM.toXML(views.get(1)).contains("<string>job</string>"));
+    }
+
+    /**
+     * Tests a property with an empty views element.
+     *
+     * @throws Exception if so
+     */
+    public void testEmptyViews() throws Exception {
+        File config = write(HEADER + "<user><properties><hudson.model.MyViewsProperty>"
+                + "<views/>"
+                + "</hudson.model.MyViewsProperty></properties></user>");
+
+        List<View> views = UserUtil.unmarshalViews(config, UserUtil.createInputFactory());
+        assertEquals(Collections.emptyList(), views);
+        assertSameViews(unmarshalWithDom(config), views);
+    }
+
+    /**
+     * Tests a property without a views element, and a user without the property.
+     *
+     * @throws Exception if so
+     */
+    public void testMissingViews() throws Exception {
+        File config = write(HEADER + "<user><properties><hudson.model.MyViewsProperty>"
+                + "<primaryViewName>all</primaryViewName>"
+                + "</hudson.model.MyViewsProperty></properties></user>");
+        List<View> views = UserUtil.unmarshalViews(config, UserUtil.createInputFactory());
+        assertEquals(Collections.emptyList(), views);
+        assertSameViews(unmarshalWithDom(config), views);
+
+        //A views element elsewhere in the file doesn't count.
+        config = write(HEADER + "<user><properties><other><views>" + LIST_VIEW + "</views></other></properties>"
+                + "</user>");
+        assertNull(UserUtil.unmarshalViews(config, UserUtil.createInputFactory()));
+        assertNull(unmarshalWithDom(config));
+    }
+
+    /**
+     * Checks that two lists hold views with the same configuration.
+     *
+     * @param expected the expected views.
+     * @param actual   the views read.
+     */
+    private static void assertSameViews(List<View> expected, List<View> actual) {
+        assertEquals(LEGACY_XSTREAM.toXML(expected), LEGACY_XSTREAM.toXML(actual));
+    }
+
+    /**
+     * Writes a user configuration file.
+     *
+     * @param xml the content.
+     * @return the file.
+     * @throws Exception if so.
+     */
+    private File write(String xml) throws Exception {
+        File file = File.createTempFile("user", ".xml", Jenkins.getInstance().getRootDir());
+        FileUtils.writeStringToFile(file, xml, "UTF-8");
+        return file;
+    }
+
+    /**
+     * Reads the views the way {@link UserUtil#unmarshalViews(String)} used to: parse to a DOM, remove the owners
+     * of the views, serialize the views element and parse that with XStream.
+     *
+     * @param file the user configuration file.
+     * @return the views, an empty list if the property has no views or null if there is no property.
+     * @throws Exception if so.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<View> unmarshalWithDom(File file) throws Exception {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file);
+        NodeList tags = doc.getDocumentElement().getElementsByTagName("hudson.model.MyViewsProperty");
+        if (tags.getLength() == 0) {
+            return null;
+        }
+        NodeList viewsTags = ((Element)tags.item(0)).getElementsByTagName("views");
+        if (viewsTags.getLength() == 0) {
+            return Collections.emptyList();
+        }
+        Element views = (Element)viewsTags.item(0);
+        NodeList children = views.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node node = children.item(i);
+            if (node instanceof Element) {
+                NodeList owners = ((Element)node).getElementsByTagName("owner");
+                for (int j = 0; j < owners.getLength(); j++) {
+                    node.removeChild(owners.item(j));
+                }
+            }
+        }
+        StringWriter sw = new StringWriter();
+        TransformerFactory.newInstance().newTransformer().transform(new DOMSource(views), new StreamResult(sw));
+        return (List<View>)LEGACY_XSTREAM.fromXML(sw.toString());
+    }
+}